@@ -1,17 +1,26 @@
 package app;
 
+import app.cache.ResponseCache;
 import app.config.ApplicationConfig;
 import app.config.HibernateConfig;
 import app.daos.GenreDAO;
+import app.daos.MovieChangeFeed;
 import app.daos.MovieDAO;
+import app.daos.ReadReplicaRouter;
 import app.exceptions.JpaException;
 import app.fetcher.FilmFetcher;
+import app.fetcher.IngestJournal;
+import app.index.AutocompleteIndex;
+import app.index.MovieIndex;
+import app.index.MovieSearchIndex;
 import app.services.FilmService;
+import app.utils.ApiProps;
 import jakarta.persistence.EntityManagerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
@@ -20,13 +29,30 @@ public class Main {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
         MovieDAO movieDAO = MovieDAO.getInstance(emf);
         GenreDAO genreDAO = GenreDAO.getInstance(emf);
-        FilmFetcher fetcher = new FilmFetcher(genreDAO);
+        IngestJournal journal = IngestJournal.open(Path.of(ApiProps.INGEST_JOURNAL_DIR));
+        FilmFetcher fetcher = new FilmFetcher(genreDAO, journal);
         FilmService filmService = new FilmService(fetcher);
+        MovieChangeFeed.getInstance().subscribe(ReadReplicaRouter.getInstance());   // Først: læsninger går til primæren før indeksene viser ændringen
+        MovieChangeFeed.getInstance().subscribe(MovieIndex.getInstance());
+        MovieChangeFeed.getInstance().subscribe(MovieSearchIndex.getInstance());
+        MovieChangeFeed.getInstance().subscribe(AutocompleteIndex.getInstance());
+        MovieChangeFeed.getInstance().subscribe(ResponseCache.getInstance());   // Efter indeksene, så cachen ryddes når de er opdateret
 
         try {
-            if (movieDAO.hasMovies()) {
+            // En påbegyndt men ikke afsluttet journal betyder at sidste indlæsning blev afbrudt eller manglede film
+            boolean interruptedImport = journal.isStarted() && !journal.isCompleted();
+            if (movieDAO.hasMovies() && !interruptedImport) {
                 System.out.println("📀 Databasen er allerede fyldt med film.");
                 logger.info("Databasen er allerede fyldt med film.");
+            } else if (interruptedImport) {
+                System.out.println("📓 Sidste indlæsning blev afbrudt. Fortsætter fra journalen...");
+                logger.info("Sidste indlæsning blev afbrudt. Fortsætter fra journalen.");
+
+                fetcher.populateGenres();
+                filmService.fetchAndSaveMovies();
+
+                System.out.println("✅ Film hentet og gemt i databasen.");
+                logger.info("Film hentet og gemt i databasen.");
             } else {
                 System.out.println("🎬 Ingen film i databasen. Henter film fra API (TMDB)...");
                 logger.info("Ingen film i databasen. Starter dataindsamling fra API...");
@@ -38,6 +64,18 @@ public class Main {
                 logger.info("Film hentet og gemt i databasen.");
             }
 
+            System.out.println("🗂️ Bygger filterindeks...");
+            logger.info("Bygger filterindeks.");
+            MovieIndex.getInstance().rebuild(movieDAO.getIndexedMovies());
+
+            System.out.println("🔎 Bygger søgeindeks...");
+            logger.info("Bygger søgeindeks.");
+            MovieSearchIndex.getInstance().rebuild(movieDAO);
+
+            System.out.println("🔤 Bygger autocomplete...");
+            logger.info("Bygger autocomplete.");
+            AutocompleteIndex.getInstance().rebuild(movieDAO);
+
             System.out.println("🚀 Starter Javalin-server...");
             logger.info("Starter Javalin-server.");
             ApplicationConfig.startServer();
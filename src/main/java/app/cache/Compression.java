@@ -0,0 +1,63 @@
+package app.cache;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+// Komprimering af cachede svar. Sker på requesttråden første gang en kodning efterspørges, så niveauerne er
+// sat til at komprimere godt uden at koste meget CPU - de højeste niveauer giver få procent mindre for flere gange tiden
+final class Compression {
+
+    private static final Logger logger = LoggerFactory.getLogger(Compression.class);
+    private static final int GZIP_LEVEL = 6;
+    private static final int BROTLI_QUALITY = 5;
+    private static final boolean BROTLI_AVAILABLE = loadBrotli();
+
+    private Compression() {
+    }
+
+    static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(GZIP_LEVEL);
+            }
+        }) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static boolean isBrotliAvailable() {
+        return BROTLI_AVAILABLE;
+    }
+
+    // null hvis brotli ikke kan indlæses på denne platform; så bruges gzip i stedet
+    static byte[] brotli(byte[] body) {
+        if (!BROTLI_AVAILABLE) return null;
+        try {
+            return Encoder.compress(body, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+        } catch (IOException e) {
+            logger.warn("Brotli-komprimering fejlede, svaret sendes med gzip", e);
+            return null;
+        }
+    }
+
+    private static boolean loadBrotli() {
+        try {
+            Brotli4jLoader.ensureAvailability();
+            return true;
+        } catch (Throwable e) {
+            logger.warn("Brotli er ikke tilgængelig ({}) - cachede svar komprimeres kun med gzip", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package app.cache;
+
+import app.daos.MovieChange;
+import app.daos.MovieChangeListener;
+import app.utils.ApiProps;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Færdigserialiserede svar for de rene læse-endpoints, nøglet på sti og normaliserede query-parametre.
+// Hele cachen hører til én datasætversion, som tælles op hver gang MovieChangeFeed melder en ændring.
+// Store svar komprimeres først når en klient beder om gzip eller brotli, og den komprimerede udgave gemmes
+// sammen med svaret, så hverken Jackson eller komprimering kører igen før næste ændring
+public class ResponseCache implements MovieChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private static final int MIN_COMPRESS_BYTES = 1024;
+    private static final ResponseCache instance = new ResponseCache(ApiProps.RESPONSE_CACHE_MAX_MB * 1024L * 1024L);
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(256, 0.75f, true);   // LRU
+    private final AtomicLong version = new AtomicLong();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @FunctionalInterface
+    public interface ResponseProducer {
+        Object produce() throws Exception;
+    }
+
+    // gzip og brotli udfyldes første gang en klient beder om dem. Felterne skrives under cachens lås
+    private static final class CachedResponse {
+        private final String key;
+        private final byte[] body;
+        private final String etag;
+        private final long version;
+        private volatile byte[] gzip;
+        private volatile byte[] brotli;
+
+        CachedResponse(String key, byte[] body, String etag, long version) {
+            this.key = key;
+            this.body = body;
+            this.etag = etag;
+            this.version = version;
+        }
+
+        byte[] variant(String encoding) {
+            return "br".equals(encoding) ? brotli : gzip;
+        }
+
+        long size() {
+            byte[] gzip = this.gzip;
+            byte[] brotli = this.brotli;
+            return body.length + (gzip != null ? gzip.length : 0) + (brotli != null ? brotli.length : 0);
+        }
+    }
+
+    ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ResponseCache getInstance() {
+        return instance;
+    }
+
+    // Svarer fra cachen eller kalder producer og gemmer resultatet. If-None-Match med samme ETag giver 304 uden body
+    public void serve(Context ctx, ResponseProducer producer) throws Exception {
+        String key = key(ctx.path(), ctx.queryParamMap());
+        long currentVersion = version.get();
+
+        CachedResponse response = lookup(key, currentVersion);
+        if (response == null) {
+            Object body = producer.produce();
+            byte[] json = ctx.jsonMapper().toJsonString(body, body.getClass()).getBytes(StandardCharsets.UTF_8);
+            response = new CachedResponse(key, json, etag(json), currentVersion);
+            store(key, response);
+        }
+        write(ctx, response);
+    }
+
+    // Vælger den kodning klienten accepterer. Hver kodning får sin egen ETag, som en stærk ETag skal.
+    // Et 304 komprimerer ikke noget; ellers komprimeres der her første gang kodningen bliver efterspurgt
+    private void write(Context ctx, CachedResponse response) {
+        String encoding = chooseEncoding(ctx.header(Header.ACCEPT_ENCODING), response.body.length);
+        ctx.header(Header.VARY, Header.ACCEPT_ENCODING);
+        ctx.header(Header.CACHE_CONTROL, "no-cache");   // Klienten må gemme svaret, men skal spørge med ETag'en hver gang
+        if (matches(ctx.header(Header.IF_NONE_MATCH), response.etag)) {
+            ctx.header(Header.ETAG, etag(response, encoding));
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = encoding != null ? compressed(response, encoding) : response.body;
+        if (body == null) {
+            // Brotli fejlede - prøv gzip, ellers ukomprimeret
+            encoding = accepts(ctx.header(Header.ACCEPT_ENCODING), "gzip") ? "gzip" : null;
+            body = encoding != null ? compressed(response, encoding) : response.body;
+        }
+        ctx.header(Header.ETAG, etag(response, encoding));
+        ctx.minSizeForCompression(Integer.MAX_VALUE);   // Javalin skal ikke komprimere en gang til
+        if (encoding != null) {
+            ctx.header(Header.CONTENT_ENCODING, encoding);
+        }
+        ctx.contentType(ContentType.APPLICATION_JSON).result(body);
+    }
+
+    private static String chooseEncoding(String acceptEncoding, int length) {
+        if (length < MIN_COMPRESS_BYTES) return null;
+        if (Compression.isBrotliAvailable() && accepts(acceptEncoding, "br")) return "br";
+        if (accepts(acceptEncoding, "gzip")) return "gzip";
+        return null;
+    }
+
+    private static String etag(CachedResponse response, String encoding) {
+        return encoding == null ? response.etag : response.etag.replaceFirst("\"$", "." + encoding + "\"");
+    }
+
+    // Komprimerer uden for låsen. Ligger svaret stadig i cachen, gemmes varianten og tælles med i størrelsen;
+    // to samtidige requests kan begge komprimere, og så beholdes den første
+    private byte[] compressed(CachedResponse response, String encoding) {
+        byte[] existing = response.variant(encoding);
+        if (existing != null) {
+            return existing;
+        }
+        byte[] data = "br".equals(encoding) ? Compression.brotli(response.body) : Compression.gzip(response.body);
+        if (data == null) {
+            return null;
+        }
+        synchronized (this) {
+            existing = response.variant(encoding);
+            if (existing != null) {
+                return existing;
+            }
+            if ("br".equals(encoding)) {
+                response.brotli = data;
+            } else {
+                response.gzip = data;
+            }
+            if (entries.get(response.key) == response) {
+                bytes += data.length;
+                evictOverflow();
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public void onMoviesChanged(MovieChange change) {
+        long newVersion = version.incrementAndGet();
+        int cleared;
+        synchronized (this) {
+            cleared = entries.size();
+            entries.clear();
+            bytes = 0;
+        }
+        if (cleared > 0) {
+            logger.info("🧹 Svar-cachen ryddet for {} svar - datasætversion {}", cleared, newVersion);
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", version.get());
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    private synchronized CachedResponse lookup(String key, long currentVersion) {
+        CachedResponse cached = entries.get(key);
+        if (cached != null && cached.version == currentVersion) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        return null;
+    }
+
+    // Et svar beregnet mens datasættet ændrede sig gemmes ikke - det kan indeholde data fra før ændringen
+    private synchronized void store(String key, CachedResponse response) {
+        if (response.version != version.get() || response.size() > maxBytes / 4) {
+            return;
+        }
+        CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+        bytes += response.size();
+        evictOverflow();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedResponse> oldest = entries.values().iterator();
+        while (bytes > maxBytes && oldest.hasNext()) {
+            bytes -= oldest.next().size();
+            oldest.remove();
+            evictions++;
+        }
+    }
+
+    // Nøgler og værdier sorteres, så genre=Drama&genre=Action og genre=Action&genre=Drama giver samme nøgle
+    static String key(String path, Map<String, List<String>> queryParams) {
+        StringBuilder key = new StringBuilder(path);
+        char separator = '?';
+        for (String name : new TreeSet<>(queryParams.keySet())) {
+            List<String> values = new ArrayList<>(queryParams.get(name));
+            Collections.sort(values);
+            for (String value : values) {
+                key.append(separator).append(name).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    // Accept-Encoding med q-værdier; "q=0" betyder at kodningen er afvist
+    static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String name = tokens[0].trim();
+            if (!name.equalsIgnoreCase(encoding) && !name.equals("*")) continue;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Stærk ETag ud fra indholdet, så et uændret svar beholder sin ETag på tværs af datasætversioner
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 findes ikke", e);
+        }
+    }
+
+    // If-None-Match sammenlignes svagt, så alle kodninger af samme indhold matcher
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            tag = tag.replaceFirst("\\.(br|gzip)\"$", "\"");
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,195 @@
+package app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Ét uforanderligt øjebliksbillede af konfigurationen, samlet fra config.properties, miljøvariabler og
+// system properties (-D), hvor den sidste kilde vinder. Indlæses én gang og kan genindlæses med
+// POST /api/config/reload. Konstanterne i ApiProps læses ved opstart og kræver genstart; det der slås op via
+// AppConfig.get() når det bruges (JWT-nøgle, udsteder og levetid, TMDB-nøgle) skifter med det samme.
+// DEPLOYED læses kun fra miljøet. Er den sat, kommer hemmeligheder og databaseindstillinger kun fra miljøet
+// og system properties - udviklingsværdierne i config.properties må aldrig bruges i drift
+public final class AppConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppConfig.class);
+    private static final String RESOURCE = "config.properties";
+    private static final Set<String> SECRETS = Set.of("SECRET_KEY", "DB_PASSWORD", "API_KEY");
+    // Indstillinger der kun findes som miljøvariabler ved deployment, men stadig skal med i describe()
+    private static final Set<String> DEPLOYMENT_KEYS = Set.of("DEPLOYED", "CONNECTION_STR", "DB_USERNAME", "DB_PASSWORD", "API_KEY");
+    // Skal komme fra miljøet når DEPLOYED er sat; mangler én, starter appen ikke
+    private static final List<String> DEPLOYED_ONLY_KEYS = List.of("SECRET_KEY", "ISSUER", "TOKEN_EXPIRE_TIME",
+            "DB_NAME", "CONNECTION_STR", "DB_USERNAME", "DB_PASSWORD");
+    private static final List<Consumer<AppConfig>> reloadListeners = new CopyOnWriteArrayList<>();
+    private static volatile AppConfig current = load();
+
+    private final Map<String, String> fileValues;   // kun config.properties
+    private final Map<String, String> values;       // alle kilder, efter forrang
+    private final Map<String, String> sources;      // nøgle -> "file", "env" eller "system"
+    private final boolean deployed;
+    private final long loadedAt = System.currentTimeMillis();
+
+    private AppConfig(Map<String, String> fileValues, Map<String, String> values, Map<String, String> sources, boolean deployed) {
+        this.fileValues = fileValues;
+        this.values = values;
+        this.sources = sources;
+        this.deployed = deployed;
+    }
+
+    public static AppConfig get() {
+        return current;
+    }
+
+    // Læser alle kilder igen og skifter øjebliksbilledet ud på én gang. Kun navnene på ændrede nøgler logges.
+    // Fejler indlæsningen, beholdes det gamle øjebliksbillede
+    public static synchronized AppConfig reload() {
+        AppConfig previous = current;
+        AppConfig next = load();
+        current = next;
+
+        Set<String> changed = new TreeSet<>();
+        Set<String> keys = new HashSet<>(previous.values.keySet());
+        keys.addAll(next.values.keySet());
+        for (String key : keys) {
+            if (!Objects.equals(previous.values.get(key), next.values.get(key))) {
+                changed.add(key);
+            }
+        }
+        logger.info("⚙️ Konfiguration genindlæst ({} ændrede nøgler: {})", changed.size(), changed);
+        reloadListeners.forEach(listener -> {
+            try {
+                listener.accept(next);
+            } catch (Exception e) {
+                logger.error("Fejl i lytter ved genindlæsning af konfigurationen", e);
+            }
+        });
+        return next;
+    }
+
+    public static void onReload(Consumer<AppConfig> listener) {
+        reloadListeners.add(listener);
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = values.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Ugyldigt heltal for " + name + ": " + value, e);
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        try {
+            return value != null ? Long.parseLong(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Ugyldigt heltal for " + name + ": " + value, e);
+        }
+    }
+
+    public String require(String name) {
+        String value = values.get(name);
+        if (value == null) {
+            throw new IllegalStateException("Mangler konfigurationen " + name);
+        }
+        return value;
+    }
+
+    // Kun værdien fra config.properties, uden miljø og system properties - som Utils.getPropertyValue altid har læst
+    public String getFileValue(String name) {
+        return fileValues.get(name);
+    }
+
+    public boolean isDeployed() {
+        return deployed;
+    }
+
+    public String getSecretKey() {
+        return require("SECRET_KEY");
+    }
+
+    public String getIssuer() {
+        return require("ISSUER");
+    }
+
+    public String getTokenExpireTime() {
+        return require("TOKEN_EXPIRE_TIME");
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    // Nøglerne fra config.properties og deployment-nøglerne med værdi og kilde; hemmeligheder maskeres
+    public Map<String, Object> describe() {
+        Set<String> keys = new TreeSet<>(fileValues.keySet());
+        DEPLOYMENT_KEYS.stream().filter(values::containsKey).forEach(keys::add);
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        for (String key : keys) {
+            Map<String, String> setting = new LinkedHashMap<>();
+            setting.put("value", SECRETS.contains(key) ? "********" : values.get(key));
+            setting.put("source", sources.get(key));
+            settings.put(key, setting);
+        }
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("loadedAt", loadedAt);
+        description.put("deployed", isDeployed());
+        description.put("settings", settings);
+        return description;
+    }
+
+    private static AppConfig load() {
+        Map<String, String> fileValues = new HashMap<>();
+        try (InputStream is = AppConfig.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (is != null) {
+                Properties properties = new Properties();
+                properties.load(is);
+                properties.stringPropertyNames().forEach(name -> fileValues.put(name, properties.getProperty(name).trim()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Kunne ikke læse " + RESOURCE, e);
+        }
+
+        // Som før: DEPLOYED afgøres af miljøet alene - hverken af filen eller af -D
+        boolean deployed = System.getenv("DEPLOYED") != null;
+
+        Map<String, String> values = new HashMap<>();
+        Map<String, String> sources = new HashMap<>();
+        fileValues.forEach((name, value) -> {
+            if (!deployed || !DEPLOYED_ONLY_KEYS.contains(name)) {
+                put(values, sources, name, value, "file");
+            }
+        });
+        System.getenv().forEach((name, value) -> put(values, sources, name, value, "env"));
+        System.getProperties().stringPropertyNames().forEach(name -> put(values, sources, name, System.getProperty(name), "system"));
+
+        if (deployed) {
+            List<String> missing = DEPLOYED_ONLY_KEYS.stream().filter(name -> !values.containsKey(name)).toList();
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("DEPLOYED er sat, men miljøet mangler " + missing);
+            }
+        }
+        return new AppConfig(Map.copyOf(fileValues), Map.copyOf(values), Map.copyOf(sources), deployed);
+    }
+
+    // Tomme værdier tæller som ikke sat, så en tom miljøvariabel ikke skjuler værdien fra filen
+    private static void put(Map<String, String> values, Map<String, String> sources, String name, String value, String source) {
+        if (value != null && !value.isBlank()) {
+            values.put(name, value.trim());
+            sources.put(name, source);
+        }
+    }
+}
@@ -32,6 +32,7 @@ public class ApplicationConfig {
         config.router.apiBuilder(SecurityRoutes.getSecurityRoutes());
 
         config.http.defaultContentType = "application/json";
+        config.useVirtualThreads = ApiProps.VIRTUAL_THREADS;
     }
 
     public static void startServer() {
@@ -50,7 +51,7 @@ public class ApplicationConfig {
 
         // 🚀 Start server
         app.start(ApiProps.PORT);
-        logger.info("Server started on port {}", ApiProps.PORT);
+        logger.info("Server started on port {} ({} threads)", ApiProps.PORT, ApiProps.VIRTUAL_THREADS ? "virtual" : "platform");
     }
 
     public static void stopServer(Javalin app) {
@@ -4,6 +4,7 @@ import app.entities.*;
 import app.security.entities.Role;
 import app.security.entities.User;
 import app.utils.ApiProps;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
@@ -16,6 +17,7 @@ public class HibernateConfig {
 
     private static EntityManagerFactory emf;
     private static EntityManagerFactory emfTest;
+    private static EntityManagerFactory emfReplica;
     private static Boolean isTest = false;
 
     public static void setTest(Boolean test) {
@@ -32,6 +34,13 @@ public class HibernateConfig {
         return emf;
     }
 
+    // Skrivebeskyttet EMF mod læsereplikaen, eller null når DB_REPLICA_URL ikke er sat (og altid i test)
+    public static synchronized EntityManagerFactory getReplicaEntityManagerFactory() {
+        if (emfReplica == null && !getTest() && !ApiProps.DB_REPLICA_URL.isBlank())
+            emfReplica = createReplicaEMF();
+        return emfReplica;
+    }
+
     public static EntityManagerFactory getEntityManagerFactoryForTest() {
         if (emfTest == null){
             setTest(true);
@@ -56,9 +65,10 @@ public class HibernateConfig {
             Properties props = new Properties();
             // Set the properties
             setBaseProperties(props);
+            setPoolProperties(props, forTest);
             if(forTest) {
                 props = setTestProperties(props);
-            } else if(System.getenv("DEPLOYED") != null) {
+            } else if(AppConfig.get().isDeployed()) {
                 setDeployedProperties(props);
             } else {
                 props = setDevProperties(props);
@@ -72,6 +82,8 @@ public class HibernateConfig {
                     .build();
             SessionFactory sf = configuration.buildSessionFactory(serviceRegistry);
             EntityManagerFactory emf = sf.unwrap(EntityManagerFactory.class);
+            alignSequences(emf);
+            createTitleSortIndex(emf);
             return emf;
         } catch (Throwable ex) {
             System.err.println("Initial SessionFactory creation failed." + ex);
@@ -79,6 +91,43 @@ public class HibernateConfig {
         }
     }
 
+    // Samme mapping som primæren, men uden skemaopdatering og second-level cache: cachen ryddes kun af
+    // skrivninger på primæren, og replikaens svar må ikke blandes ind i den. Puljen starter også
+    // selvom replikaen er nede, så ReadReplicaRouter bare sender læsningerne til primæren imens
+    private static EntityManagerFactory createReplicaEMF() {
+        try {
+            Configuration configuration = new Configuration();
+            Properties props = new Properties();
+            setBaseProperties(props);
+            setPoolProperties(props, false);
+            if (AppConfig.get().isDeployed()) {
+                setDeployedProperties(props);
+            } else {
+                setDevProperties(props);
+            }
+            props.put("hibernate.connection.url", ApiProps.DB_REPLICA_URL);
+            props.put("hibernate.hbm2ddl.auto", "none");
+            props.put("hibernate.cache.use_second_level_cache", "false");
+            props.put("hibernate.cache.use_query_cache", "false");
+            props.put("hibernate.temp.use_jdbc_metadata_defaults", "false");
+            props.put("hibernate.hikari.poolName", "movie-replica-pool");
+            props.put("hibernate.hikari.readOnly", "true");
+            props.put("hibernate.hikari.initializationFailTimeout", "-1");
+
+            configuration.setProperties(props);
+            getAnnotationConfiguration(configuration);
+
+            ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+                    .applySettings(configuration.getProperties())
+                    .build();
+            SessionFactory sf = configuration.buildSessionFactory(serviceRegistry);
+            return sf.unwrap(EntityManagerFactory.class);
+        } catch (Throwable ex) {
+            System.err.println("Replica SessionFactory creation failed." + ex);
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
     private static Properties setBaseProperties(Properties props){
         props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
         props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
@@ -87,14 +136,79 @@ public class HibernateConfig {
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.use_sql_comments", "false");
+
+        // JDBC-batching: virker kun fordi Movie, Actor og Director bruger sekvenser i stedet for IDENTITY
+        props.put("hibernate.jdbc.batch_size", String.valueOf(ApiProps.JDBC_BATCH_SIZE));
+        props.put("hibernate.order_inserts", "true");
+        props.put("hibernate.order_updates", "true");
+        props.put("hibernate.jdbc.batch_versioned_data", "true");
+
+        // Second-level cache (Ehcache via JCache) til genrer, skuespillere og instruktører - se ehcache.xml
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", "true");
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        props.put("hibernate.javax.cache.uri", "classpath:ehcache.xml");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "create-warn");
+        props.put("hibernate.generate_statistics", String.valueOf(ApiProps.HIBERNATE_STATISTICS));
+        return props;
+    }
+
+    // HikariCP i stedet for Hibernates indbyggede pulje. Hibernate giver selv url, bruger og driver videre til Hikari;
+    // hibernate.hikari.dataSource.* går direkte til PgJDBC
+    private static Properties setPoolProperties(Properties props, boolean forTest) {
+        props.put("hibernate.connection.provider_class", "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+        props.put("hibernate.hikari.poolName", forTest ? "movie-test-pool" : "movie-pool");
+        props.put("hibernate.hikari.maximumPoolSize", String.valueOf(forTest ? Math.min(ApiProps.DB_POOL_MAX_SIZE, 4) : ApiProps.DB_POOL_MAX_SIZE));
+        props.put("hibernate.hikari.minimumIdle", String.valueOf(forTest ? 0 : ApiProps.DB_POOL_MIN_IDLE));
+        props.put("hibernate.hikari.connectionTimeout", String.valueOf(ApiProps.DB_POOL_CONNECTION_TIMEOUT_MS));
+        props.put("hibernate.hikari.leakDetectionThreshold", String.valueOf(ApiProps.DB_POOL_LEAK_DETECTION_MS));
+        props.put("hibernate.hikari.metricsTrackerFactory", PoolMetrics.TrackerFactory.class.getName());
+
+        // Server-side prepared statements: gentagne forespørgsler planlægges kun én gang pr. forbindelse
+        props.put("hibernate.hikari.dataSource.prepareThreshold", String.valueOf(ApiProps.DB_PREPARE_THRESHOLD));
+        props.put("hibernate.hikari.dataSource.preparedStatementCacheQueries", String.valueOf(ApiProps.DB_STATEMENT_CACHE_QUERIES));
+        props.put("hibernate.hikari.dataSource.preparedStatementCacheSizeMiB", "5");
         return props;
     }
 
+    // Tabeller fra før skiftet til sekvenser har id'er som en ny sekvens ikke kender til. Sekvensen flyttes
+    // forbi det højeste id plus en allokeringsblok, men aldrig baglæns
+    private static void alignSequences(EntityManagerFactory emf) {
+        String[][] sequences = {{"movie", "movie_seq", "100"}, {"actor", "actor_seq", "500"}, {"director", "director_seq", "100"}};
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            for (String[] sequence : sequences) {
+                em.createNativeQuery("SELECT setval('" + sequence[1] + "', GREATEST((SELECT COALESCE(MAX(id), 0) FROM " + sequence[0]
+                        + ") + " + sequence[2] + ", (SELECT last_value FROM " + sequence[1] + ")))").getSingleResult();
+            }
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            System.err.println("Kunne ikke justere sekvenserne: " + e.getMessage());
+        }
+    }
+
+    // MovieSort.TITLE sorterer med collationen ucs_basic, som idx_movie_title_id (standardcollationen) ikke kan
+    // bruges til. @Index kan ikke udtrykke en collation, så indekset oprettes her
+    private static void createTitleSortIndex(EntityManagerFactory emf) {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("CREATE INDEX IF NOT EXISTS idx_movie_title_ucs_id ON movie ((title COLLATE ucs_basic), id)").executeUpdate();
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            System.err.println("Kunne ikke oprette indekset til titelsortering: " + e.getMessage());
+        }
+    }
+
     private static Properties setDeployedProperties(Properties props) {
-        String DBName = System.getenv("DB_NAME");
-        props.setProperty("hibernate.connection.url", System.getenv("CONNECTION_STR") + DBName);
-        props.setProperty("hibernate.connection.username", System.getenv("DB_USERNAME"));
-        props.setProperty("hibernate.connection.password", System.getenv("DB_PASSWORD"));
+        AppConfig config = AppConfig.get();
+        String DBName = config.require("DB_NAME");
+        String url = config.require("CONNECTION_STR") + DBName;
+        // Parametre skal stå efter databasenavnet, så de hører til i DB_NAME (fx moviedb?sslmode=require) -
+        // CONNECTION_STR er kun værten og skal slutte med /
+        props.setProperty("hibernate.connection.url", url + (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true");
+        props.setProperty("hibernate.connection.username", config.require("DB_USERNAME"));
+        props.setProperty("hibernate.connection.password", config.require("DB_PASSWORD"));
         return props;
     }
 
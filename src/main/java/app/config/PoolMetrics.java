@@ -0,0 +1,127 @@
+package app.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Målinger fra HikariCP-puljerne: hvor lang tid requests venter på en forbindelse, hvor længe de holder
+// den, og hvor mange der giver op. Hikari kalder trackeren på hver udlån, så alt er låsefrie tællere.
+// Én tracker pr. pulje (primæren og evt. læsereplikaen), nøglet på puljens navn
+public class PoolMetrics implements IMetricsTracker {
+
+    private static final Map<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+    private static final long SLOW_ACQUISITION_NANOS = 10_000_000;   // Udlån der venter mere end 10 ms
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder slowAcquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder usages = new LongAdder();
+    private final LongAdder usageMillis = new LongAdder();
+    private final LongAccumulator maxUsageMillis = new LongAccumulator(Long::max, 0);
+    private final LongAdder connectionAttempts = new LongAdder();
+    private final PoolStats poolStats;
+    private volatile long since = System.currentTimeMillis();
+
+    private PoolMetrics(PoolStats poolStats) {
+        this.poolStats = poolStats;
+    }
+
+    // Hikari opretter selv fabrikken ud fra klassenavnet i hibernate.hikari.metricsTrackerFactory
+    public static class TrackerFactory implements MetricsTrackerFactory {
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            PoolMetrics metrics = new PoolMetrics(poolStats);
+            pools.put(poolName, metrics);
+            return metrics;
+        }
+    }
+
+    public static Map<String, Object> getAllStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        pools.forEach((name, metrics) -> stats.put(name, metrics.getStats()));
+        return stats;
+    }
+
+    public static void resetAll() {
+        pools.values().forEach(PoolMetrics::reset);
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquisitions.increment();
+        waitNanos.add(elapsedAcquiredNanos);
+        maxWaitNanos.accumulate(elapsedAcquiredNanos);
+        if (elapsedAcquiredNanos > SLOW_ACQUISITION_NANOS) {
+            slowAcquisitions.increment();
+        }
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usages.increment();
+        usageMillis.add(elapsedBorrowedMillis);
+        maxUsageMillis.accumulate(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    // Hikari kalder også denne når oprettelsen fejler, så det er forsøg og ikke nye forbindelser
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        connectionAttempts.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("since", since);
+
+        // Hikari opdaterer øjebliksbilledet højst én gang i sekundet
+        int max = poolStats.getMaxConnections();
+        stats.put("active", poolStats.getActiveConnections());
+        stats.put("idle", poolStats.getIdleConnections());
+        stats.put("total", poolStats.getTotalConnections());
+        stats.put("max", max);
+        stats.put("minIdle", poolStats.getMinConnections());
+        stats.put("pendingThreads", poolStats.getPendingThreads());
+        stats.put("utilization", max == 0 ? 0.0 : Math.round(poolStats.getActiveConnections() * 1000.0 / max) / 1000.0);
+
+        long acquired = acquisitions.sum();
+        stats.put("acquisitions", acquired);
+        stats.put("avgWaitMs", acquired == 0 ? 0.0 : Math.round(waitNanos.sum() / 1000.0 / acquired) / 1000.0);
+        stats.put("maxWaitMs", Math.round(maxWaitNanos.get() / 1000.0) / 1000.0);
+        stats.put("slowAcquisitions", slowAcquisitions.sum());
+        stats.put("timeouts", timeouts.sum());
+
+        long used = usages.sum();
+        stats.put("avgUsageMs", used == 0 ? 0.0 : Math.round(usageMillis.sum() * 1000.0 / used) / 1000.0);
+        stats.put("maxUsageMs", maxUsageMillis.get());
+        stats.put("connectionAttempts", connectionAttempts.sum());
+        return stats;
+    }
+
+    // Nulstiller tællerne, fx før en måling; puljens øjebliksbillede påvirkes ikke
+    public void reset() {
+        acquisitions.reset();
+        waitNanos.reset();
+        maxWaitNanos.reset();
+        slowAcquisitions.reset();
+        timeouts.reset();
+        usages.reset();
+        usageMillis.reset();
+        maxUsageMillis.reset();
+        connectionAttempts.reset();
+        since = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,43 @@
+package app.controller;
+
+import app.config.HibernateConfig;
+import app.daos.ActorDAO;
+import app.dtos.PersonSummaryDTO;
+import app.enums.PersonSort;
+import app.exceptions.ApiException;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+public class ActorController {
+    private static final Logger logger = LoggerFactory.getLogger(ActorController.class);
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final ActorDAO actorDAO = ActorDAO.getInstance(HibernateConfig.getEntityManagerFactory());
+
+    // Oversigt med antal film og topfilm; ?sort=name|movieCount, page starter ved 1
+    public void getActorSummaries(Context ctx) throws ApiException {
+        try {
+            String pageParam = ctx.queryParam("page");
+            String sizeParam = ctx.queryParam("size");
+
+            int page = (pageParam != null) ? Integer.parseInt(pageParam) : 1;
+            int size = (sizeParam != null) ? Integer.parseInt(sizeParam) : 50;
+            if (size > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("size må højst være " + MAX_PAGE_SIZE);
+            }
+            PersonSort sort = PersonSort.fromParam(ctx.queryParam("sort"));
+
+            List<PersonSummaryDTO> actors = actorDAO.getSummaries(sort, page, size);
+            logger.info("✅ Hentede {} skuespillere (sort: {}, page: {}, size: {})", actors.size(), sort.getParam(), page, size);
+            ctx.json(actors);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Ugyldige værdier for page, size eller sort", e);
+        } catch (Exception e) {
+            logger.error("❌ Fejl ved hentning af skuespillerne", e);
+            throw new ApiException(500, "Der opstod en fejl ved hentning af skuespillerne", e);
+        }
+    }
+}
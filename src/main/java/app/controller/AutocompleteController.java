@@ -0,0 +1,42 @@
+package app.controller;
+
+import app.enums.SuggestionType;
+import app.exceptions.ApiException;
+import app.index.AutocompleteIndex;
+import io.javalin.http.Context;
+import io.javalin.validation.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+public class AutocompleteController {
+    private static final Logger logger = LoggerFactory.getLogger(AutocompleteController.class);
+    private static final int MAX_PREFIX_LENGTH = 100;
+    private static final int MAX_LIMIT = 20;
+
+    private final AutocompleteIndex autocompleteIndex = AutocompleteIndex.getInstance();
+
+    // ?type=title|actor|director&prefix=...&limit=... - svarer fra hukommelsen, så der logges kun på debug
+    public void suggest(Context ctx) throws ApiException {
+        try {
+            SuggestionType type = SuggestionType.fromParam(ctx.queryParamAsClass("type", String.class).getOrDefault("title"));
+            String prefix = ctx.queryParam("prefix");
+            if (prefix == null || prefix.isBlank() || prefix.length() > MAX_PREFIX_LENGTH) {
+                throw new IllegalArgumentException("prefix skal være mellem 1 og " + MAX_PREFIX_LENGTH + " tegn");
+            }
+            int limit = ctx.queryParamAsClass("limit", Integer.class)
+                    .check(value -> value > 0 && value <= MAX_LIMIT, "limit skal være mellem 1 og " + MAX_LIMIT)
+                    .getOrDefault(10);
+
+            List<String> suggestions = autocompleteIndex.suggest(type, prefix, limit);
+            logger.debug("🔤 {} forslag til '{}' ({})", suggestions.size(), prefix, type.getParam());
+            ctx.json(suggestions);
+        } catch (IllegalArgumentException | ValidationException e) {
+            throw new ApiException(400, "Ugyldige værdier for type, prefix eller limit", e);
+        } catch (Exception e) {
+            logger.error("❌ Fejl ved opslag i autocomplete", e);
+            throw new ApiException(500, "Der opstod en fejl ved opslag i autocomplete", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package app.controller;
+
+import app.config.AppConfig;
+import app.exceptions.ApiException;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UncheckedIOException;
+
+public class ConfigController {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigController.class);
+
+    // Den konfiguration der gælder lige nu, med kilde pr. nøgle og hemmeligheder maskeret
+    public void getConfig(Context ctx) {
+        ctx.json(AppConfig.get().describe());
+    }
+
+    // Læser config.properties, miljøet og system properties igen
+    public void reloadConfig(Context ctx) throws ApiException {
+        try {
+            AppConfig config = AppConfig.reload();
+            logger.info("⚙️ Konfiguration genindlæst via API");
+            ctx.json(config.describe());
+        } catch (IllegalStateException | UncheckedIOException e) {
+            throw new ApiException(500, "Konfigurationen kunne ikke genindlæses - den gamle gælder stadig: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package app.controller;
+
+import app.config.HibernateConfig;
+import app.daos.DirectorDAO;
+import app.dtos.DirectorDTO;
+import app.dtos.PersonSummaryDTO;
+import app.enums.PersonSort;
+import app.exceptions.ApiException;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+public class DirectorController {
+    private static final Logger logger = LoggerFactory.getLogger(DirectorController.class);
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final DirectorDAO directorDAO = DirectorDAO.getInstance(HibernateConfig.getEntityManagerFactory());
+
+    // Uden page og size hentes alle instruktører; ellers én side (page starter ved 1)
+    public void getDirectors(Context ctx) throws ApiException {
+        try {
+            String pageParam = ctx.queryParam("page");
+            String sizeParam = ctx.queryParam("size");
+
+            if (pageParam == null && sizeParam == null) {
+                List<DirectorDTO> directors = directorDAO.getAll();
+                logger.info("✅ Hentede alle {} instruktører", directors.size());
+                ctx.json(directors);
+                return;
+            }
+
+            int page = (pageParam != null) ? Integer.parseInt(pageParam) : 1;
+            int size = (sizeParam != null) ? Integer.parseInt(sizeParam) : 50;
+            if (size > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("size må højst være " + MAX_PAGE_SIZE);
+            }
+
+            List<DirectorDTO> directors = directorDAO.getPage(page, size);
+            logger.info("✅ Hentede {} instruktører (page: {}, size: {})", directors.size(), page, size);
+            ctx.json(directors);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Ugyldige værdier for page eller size", e);
+        } catch (Exception e) {
+            logger.error("❌ Fejl ved hentning af instruktørerne", e);
+            throw new ApiException(500, "Der opstod en fejl ved hentning af instruktørerne", e);
+        }
+    }
+
+    // Oversigt med antal film og topfilm; ?sort=name|movieCount, page starter ved 1
+    public void getDirectorSummaries(Context ctx) throws ApiException {
+        try {
+            String pageParam = ctx.queryParam("page");
+            String sizeParam = ctx.queryParam("size");
+
+            int page = (pageParam != null) ? Integer.parseInt(pageParam) : 1;
+            int size = (sizeParam != null) ? Integer.parseInt(sizeParam) : 50;
+            if (size > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("size må højst være " + MAX_PAGE_SIZE);
+            }
+            PersonSort sort = PersonSort.fromParam(ctx.queryParam("sort"));
+
+            List<PersonSummaryDTO> directors = directorDAO.getSummaries(sort, page, size);
+            logger.info("✅ Hentede {} instruktører (sort: {}, page: {}, size: {})", directors.size(), sort.getParam(), page, size);
+            ctx.json(directors);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Ugyldige værdier for page, size eller sort", e);
+        } catch (Exception e) {
+            logger.error("❌ Fejl ved hentning af instruktørerne", e);
+            throw new ApiException(500, "Der opstod en fejl ved hentning af instruktørerne", e);
+        }
+    }
+}
@@ -1,47 +1,88 @@
 package app.controller;
 
+import app.cache.ResponseCache;
 import app.config.HibernateConfig;
 import app.daos.MovieDAO;
+import app.dtos.MovieCursor;
 import app.dtos.MovieDTO;
+import app.dtos.MoviePageDTO;
 import app.dtos.FilterCountDTO;
+import app.enums.MovieField;
+import app.enums.MovieSort;
+import app.index.MovieIndex;
+import app.index.MovieSearchIndex;
+import app.services.BitmapFilterEngine;
+import app.services.IFilterEngine;
+import app.services.JpqlFilterEngine;
+import app.utils.ApiProps;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.json.JsonMapper;
+import io.javalin.validation.ValidationException;
 import jakarta.persistence.EntityManagerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import app.services.MovieService;
 import app.exceptions.ApiException;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MovieController {
     private final MovieDAO movieDAO;
+    private final IFilterEngine filterEngine;
     private final MovieService movieService = new MovieService();
+    private final ResponseCache responseCache = ResponseCache.getInstance();
     private static final Logger logger = LoggerFactory.getLogger(MovieController.class);
+    private static final int MAX_SEARCH_LENGTH = 200;
+    private static final int MAX_SEARCH_LIMIT = 100;
     private static final List<String> SUPPORTED_FILTERS = List.of("genre", "year", "language", "rating", "director", "actor", "title");
 
     public MovieController() {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
         this.movieDAO = MovieDAO.getInstance(emf);
+        this.filterEngine = "jpql".equalsIgnoreCase(ApiProps.FILTER_ENGINE)
+                ? new JpqlFilterEngine(movieDAO)
+                : new BitmapFilterEngine(movieDAO, MovieIndex.getInstance());
+        logger.info("Bruger {} til filtrering af film", filterEngine.getClass().getSimpleName());
     }
 
+    // Svarene caches pr. datasætversion (se ResponseCache).
+    // Med ?cursor= (tom første gang) svares med en MoviePageDTO og keyset-pagination; uden cursor bruges page som før
     public void getAllMovies(Context ctx) throws ApiException {
         try {
-            String pageParam = ctx.queryParam("page");
-            String sizeParam = ctx.queryParam("size");
+            responseCache.serve(ctx, () -> {
+                String pageParam = ctx.queryParam("page");
+                String sizeParam = ctx.queryParam("size");
 
-            int page = (pageParam != null) ? Integer.parseInt(pageParam) : 0;
-            int size = (sizeParam != null) ? Integer.parseInt(sizeParam) : 20;
+                int page = (pageParam != null) ? Integer.parseInt(pageParam) : 0;
+                int size = (sizeParam != null) ? Integer.parseInt(sizeParam) : 20;
+                Set<MovieField> fields = MovieField.parse(ctx.queryParams("fields"));
 
-            List<MovieDTO> movies = movieDAO.getMovies(page, size).stream()
-                    .map(MovieDTO::new)
-                    .toList();
+                if (usesCursor(ctx)) {
+                    MovieCursor cursor = parseCursor(ctx);
+                    MovieSort sort = cursor != null ? cursor.sort() : MovieSort.fromParam(ctx.queryParam("sort"));
+                    List<MovieDTO> movies = movieDAO.getMoviesAfter(sort, cursor, size, withSortKey(fields, sort));
+                    logger.info("✅ Hentede {} film efter cursor (sort: {}, size: {})", movies.size(), sort.getParam(), size);
+                    return new MoviePageDTO(project(movies, fields), MovieCursor.next(sort, movies, size));
+                }
+
+                List<MovieDTO> movies = movieDAO.getMovies(MovieSort.fromParam(ctx.queryParam("sort")), page, size, fields);
 
-            logger.info("✅ Hentede {} film (page: {}, size: {})", movies.size(), page, size);
-            ctx.json(movies);
-        } catch (NumberFormatException e) {
-            throw new ApiException(400, "Ugyldige værdier for page eller size", e);
+                logger.info("✅ Hentede {} film (page: {}, size: {})", movies.size(), page, size);
+                return project(movies, fields);
+            });
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Ugyldige værdier for page, size, sort, cursor eller fields", e);
         } catch (Exception e) {
             logger.error("❌ Fejl ved hentning af filmene", e);
             throw new ApiException(500, "Der opstod en fejl ved hentning af filmene", e);
@@ -50,17 +91,19 @@ public class MovieController {
 
     public void getFilteredCounts(Context ctx) throws ApiException {
         try {
-            Map<String, List<String>> filterParams = new HashMap<>();
-            for (String key : SUPPORTED_FILTERS) {
-                List<String> values = ctx.queryParams(key);
-                if (values != null && !values.isEmpty()) {
-                    filterParams.put(key, values);
+            responseCache.serve(ctx, () -> {
+                Map<String, List<String>> filterParams = new HashMap<>();
+                for (String key : SUPPORTED_FILTERS) {
+                    List<String> values = ctx.queryParams(key);
+                    if (values != null && !values.isEmpty()) {
+                        filterParams.put(key, values);
+                    }
                 }
-            }
 
-            FilterCountDTO filterCountDTO = movieDAO.getFilteredCounts(filterParams);
-            logger.info("✅ Beregnede filter-tællinger");
-            ctx.json(filterCountDTO);
+                FilterCountDTO filterCountDTO = movieDAO.getFilteredCounts(filterParams);
+                logger.info("✅ Beregnede filter-tællinger");
+                return filterCountDTO;
+            });
         } catch (Exception e) {
             logger.error("❌ Fejl i getFilteredCounts", e);
             throw new ApiException(500, "Fejl ved hentning af filter counts", e);
@@ -69,23 +112,141 @@ public class MovieController {
 
     public void getFilteredMovies(Context ctx) throws ApiException {
         try {
-            Map<String, List<String>> filterCriteria = new HashMap<>();
-            for (String key : SUPPORTED_FILTERS) {
-                List<String> values = ctx.queryParams(key);
-                if (values != null && !values.isEmpty()) {
-                    filterCriteria.put(key, values);
+            responseCache.serve(ctx, () -> {
+                Map<String, List<String>> filterCriteria = new HashMap<>();
+                for (String key : SUPPORTED_FILTERS) {
+                    List<String> values = ctx.queryParams(key);
+                    if (values != null && !values.isEmpty()) {
+                        filterCriteria.put(key, values);
+                    }
                 }
-            }
+                validateFilters(filterCriteria);
 
-            int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
-            int pageSize = ctx.queryParamAsClass("pageSize", Integer.class).getOrDefault(20);
+                int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
+                int pageSize = ctx.queryParamAsClass("pageSize", Integer.class).getOrDefault(20);
+                MovieCursor cursor = parseCursor(ctx);
+                MovieSort sort = cursor != null ? cursor.sort() : MovieSort.fromParam(ctx.queryParam("sort"));
+                Set<MovieField> fields = MovieField.parse(ctx.queryParams("fields"));
 
-            List<MovieDTO> filteredMovies = movieDAO.getFilteredMovies(filterCriteria, page, pageSize);
-            logger.info("✅ Hentede {} filtrerede film", filteredMovies.size());
-            ctx.json(filteredMovies);
+                List<MovieDTO> filteredMovies = filterEngine.getFilteredMovies(filterCriteria, sort, cursor, page, pageSize,
+                        usesCursor(ctx) ? withSortKey(fields, sort) : fields);
+                logger.info("✅ Hentede {} filtrerede film", filteredMovies.size());
+                if (usesCursor(ctx)) {
+                    return new MoviePageDTO(project(filteredMovies, fields), MovieCursor.next(sort, filteredMovies, pageSize));
+                }
+                return project(filteredMovies, fields);
+            });
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Ugyldige værdier for filtre, sortering, pagination eller fields", e);
         } catch (Exception e) {
             logger.error("❌ Fejl i getFilteredMovies", e);
             throw new ApiException(500, "Fejl ved hentning af filtrerede film", e);
         }
     }
+
+    // Fritekstsøgning i titel, originaltitel og beskrivelse, bedste match først. Understøtter også ?fields=
+    public void searchMovies(Context ctx) throws ApiException {
+        try {
+            responseCache.serve(ctx, () -> {
+                String query = ctx.queryParam("q");
+                if (query == null || query.isBlank() || query.length() > MAX_SEARCH_LENGTH) {
+                    throw new IllegalArgumentException("q skal være mellem 1 og " + MAX_SEARCH_LENGTH + " tegn");
+                }
+                int limit = ctx.queryParamAsClass("limit", Integer.class)
+                        .check(value -> value > 0 && value <= MAX_SEARCH_LIMIT, "limit skal være mellem 1 og " + MAX_SEARCH_LIMIT)
+                        .getOrDefault(20);
+                Set<MovieField> fields = MovieField.parse(ctx.queryParams("fields"));
+
+                List<Long> ids = MovieSearchIndex.getInstance().search(query, limit);
+                List<MovieDTO> movies = movieDAO.findByIds(ids, fields);
+                logger.info("🔎 Søgning efter '{}' gav {} film", query, movies.size());
+                return project(movies, fields);
+            });
+        } catch (IllegalArgumentException | ValidationException e) {
+            throw new ApiException(400, "Ugyldige værdier for q, limit eller fields", e);
+        } catch (Exception e) {
+            logger.error("❌ Fejl ved søgning efter film", e);
+            throw new ApiException(500, "Der opstod en fejl ved søgning efter film", e);
+        }
+    }
+
+    // Hele kataloget som NDJSON (standard) eller ?format=json som ét array. Hver film skrives direkte til
+    // svaret efterhånden som den hentes, så hukommelsen ikke afhænger af katalogets størrelse
+    public void exportMovies(Context ctx) throws ApiException {
+        String format = ctx.queryParamAsClass("format", String.class).getOrDefault("ndjson");
+        if (!format.equalsIgnoreCase("ndjson") && !format.equalsIgnoreCase("json")) {
+            throw new ApiException(400, "Ukendt format: " + format);
+        }
+        boolean array = format.equalsIgnoreCase("json");
+        JsonMapper jsonMapper = ctx.jsonMapper();
+
+        ctx.contentType(array ? ContentType.APPLICATION_JSON.getMimeType() : "application/x-ndjson");
+        ctx.header(Header.CONTENT_DISPOSITION, "attachment; filename=\"movies." + format.toLowerCase() + "\"");
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(ctx.outputStream(), 64 * 1024)) {
+            boolean[] first = {true};
+            if (array) out.write('[');
+            int exported = movieDAO.exportMovies(movie -> {
+                try {
+                    if (array && !first[0]) out.write(',');
+                    out.write(jsonMapper.toJsonString(movie, MovieDTO.class).getBytes(StandardCharsets.UTF_8));
+                    if (!array) out.write('\n');
+                    first[0] = false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (array) out.write(']');
+            logger.info("📤 Eksporterede {} film som {} på {} ms", exported, format, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | UncheckedIOException e) {
+            // Svaret er allerede i gang, så status kan ikke ændres; typisk har klienten lukket forbindelsen
+            logger.warn("⚠️ Eksporten blev afbrudt: {}", e.getMessage());
+        } catch (Exception e) {
+            logger.error("❌ Fejl ved eksport af film", e);
+            throw new ApiException(500, "Der opstod en fejl ved eksport af filmene", e);
+        }
+    }
+
+    // Cursoren skal bruge sorteringsnøglen, også når klienten ikke har bedt om feltet
+    private static Set<MovieField> withSortKey(Set<MovieField> fields, MovieSort sort) {
+        if (fields == null) return null;
+        Set<MovieField> withKey = EnumSet.copyOf(fields);
+        withKey.add(MovieField.forSort(sort));
+        return withKey;
+    }
+
+    // Med ?fields= sendes kun de valgte felter
+    private static List<?> project(List<MovieDTO> movies, Set<MovieField> fields) {
+        if (fields == null) return movies;
+        return movies.stream().map(movie -> MovieField.select(movie, fields)).toList();
+    }
+
+    // Tjekkes før filtermotoren vælges, så FILTER_ENGINE ikke ændrer svaret: et ugyldigt år eller en ugyldig
+    // rating giver 400 i begge motorer, og år skrives som heltal på samme form som i MovieIndex
+    private static void validateFilters(Map<String, List<String>> filters) {
+        if (filters.containsKey("year")) {
+            filters.put("year", filters.get("year").stream().map(year -> String.valueOf(Integer.parseInt(year.trim()))).toList());
+        }
+        if (filters.containsKey("rating")) {
+            filters.get("rating").forEach(Double::parseDouble);
+        }
+    }
+
+    private static boolean usesCursor(Context ctx) {
+        return ctx.queryParamMap().containsKey("cursor");
+    }
+
+    // Cursoren bestemmer selv sorteringen; en anden sort-parameter ved siden af er en fejl
+    private static MovieCursor parseCursor(Context ctx) {
+        String token = ctx.queryParam("cursor");
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        MovieCursor cursor = MovieCursor.decode(token);
+        String sortParam = ctx.queryParam("sort");
+        if (sortParam != null && !sortParam.isBlank() && MovieSort.fromParam(sortParam) != cursor.sort()) {
+            throw new IllegalArgumentException("Cursoren hører til sorteringen " + cursor.sort().getParam());
+        }
+        return cursor;
+    }
 }
@@ -0,0 +1,80 @@
+package app.controller;
+
+import app.cache.ResponseCache;
+import app.config.HibernateConfig;
+import app.config.PoolMetrics;
+import app.daos.ReadReplicaRouter;
+import io.javalin.http.Context;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class StatsController {
+
+    private final Statistics statistics = HibernateConfig.getEntityManagerFactory()
+            .unwrap(SessionFactory.class)
+            .getStatistics();
+
+    // Hit/miss for second-level cachen, samlet og pr. region, så regionerne i ehcache.xml kan dimensioneres.
+    // Tællerne står på nul når HIBERNATE_STATISTICS er slået fra
+    public void getCacheStats(Context ctx) {
+        Map<String, Object> regions = new TreeMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(regionName);
+            regions.put(regionName, regionStats(region.getHitCount(), region.getMissCount(), region.getPutCount(),
+                    region.getElementCountInMemory()));
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("enabled", statistics.isStatisticsEnabled());
+        response.put("since", statistics.getStart().toEpochMilli());
+        response.put("secondLevel", regionStats(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount(), -1));
+        response.put("queryCache", regionStats(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount(), -1));
+        response.put("regions", regions);
+        ctx.json(response);
+    }
+
+    public void getResponseCacheStats(Context ctx) {
+        ctx.json(ResponseCache.getInstance().getStats());
+    }
+
+    // Udnyttelse af forbindelsespuljerne og hvor længe requests venter på en forbindelse
+    public void getPoolStats(Context ctx) {
+        ctx.json(PoolMetrics.getAllStats());
+    }
+
+    public void resetPoolStats(Context ctx) {
+        PoolMetrics.resetAll();
+        ctx.status(204);
+    }
+
+    // Om læsereplikaen bruges lige nu, hvor langt den er bagud, og hvor mange læsninger hver side har taget
+    public void getReplicaStats(Context ctx) {
+        ctx.json(ReadReplicaRouter.getInstance().getStats());
+    }
+
+    // Nulstiller tællerne, fx før en måling
+    public void resetStats(Context ctx) {
+        statistics.clear();
+        ctx.status(204);
+    }
+
+    private static Map<String, Object> regionStats(long hits, long misses, long puts, long elements) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("puts", puts);
+        long lookups = hits + misses;
+        stats.put("hitRatio", lookups == 0 ? 0.0 : Math.round(hits * 1000.0 / lookups) / 1000.0);
+        if (elements >= 0) {
+            stats.put("entries", elements);
+        }
+        return stats;
+    }
+}
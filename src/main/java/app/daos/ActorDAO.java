@@ -1,11 +1,15 @@
 package app.daos;
 
 import app.dtos.ActorDTO;
+import app.dtos.PersonSummaryDTO;
 import app.entities.Actor;
+import app.entities.Movie;
+import app.enums.PersonSort;
 import app.exceptions.JpaException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,7 +20,13 @@ public class ActorDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(ActorDAO.class);
     private static ActorDAO instance;
+    private final ReadReplicaRouter replicaRouter = ReadReplicaRouter.getInstance();
     private static EntityManagerFactory emf;
+    private static final PersonSummaryQuery SUMMARY_QUERY = new PersonSummaryQuery("Actor", "p.movies",
+            "SELECT actor_id, title FROM (" +
+                    "SELECT ma.actor_id, m.title, ROW_NUMBER() OVER (PARTITION BY ma.actor_id ORDER BY m.popularity DESC, m.id DESC) AS rn " +
+                    "FROM movie_actor ma JOIN movie m ON m.id = ma.movie_id WHERE ma.actor_id IN (:ids)) t " +
+                    "WHERE rn <= :top ORDER BY actor_id, rn");
 
     public static ActorDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -50,11 +60,14 @@ public class ActorDAO {
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Actor actor = em.find(Actor.class, dto.getId());
+            List<Long> movieIds = List.of();
             if (actor != null) {
                 actor.setName(dto.getName());
                 em.merge(actor);
+                movieIds = findMovieIds(em, actor.getId());
             }
             em.getTransaction().commit();
+            MovieChangeFeed.getInstance().refresh(em, movieIds);
         } catch (Exception e) {
             logger.error("Fejl under opdatering af skuespiller: " + dto.getName(), e);
             throw new JpaException("Der opstod en fejl under opdatering af en skuespiller", e);
@@ -65,10 +78,17 @@ public class ActorDAO {
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Actor actor = em.find(Actor.class, id);
+            List<Long> movieIds = List.of();
             if (actor != null) {
+                // Movie ejer movie_actor, så forbindelserne skal fjernes fra filmenes side
+                movieIds = findMovieIds(em, id);
+                for (Movie movie : actor.getMovies()) {
+                    movie.getActors().remove(actor);
+                }
                 em.remove(actor);
             }
             em.getTransaction().commit();
+            MovieChangeFeed.getInstance().refresh(em, movieIds);
         } catch (Exception e) {
             logger.error("Fejl under sletning af skuespiller med ID: " + id, e);
             throw new JpaException("Der opstod en fejl under sletning af en skuespiller", e);
@@ -76,28 +96,50 @@ public class ActorDAO {
     }
 
     public List<ActorDTO> getAll() {
-        try (EntityManager em = emf.createEntityManager()) {
-            List<Actor> actors = em.createQuery("SELECT a FROM Actor a", Actor.class).getResultList();
-            return actors.stream()
-                    .map(a -> ActorDTO.builder()
-                            .id(a.getId())
-                            .name(a.getName())
-                            .build())
-                    .collect(Collectors.toList());
+        try {
+            return replicaRouter.read(emf, em -> {
+                List<Actor> actors = em.createQuery("SELECT a FROM Actor a", Actor.class).getResultList();
+                return actors.stream()
+                        .map(a -> ActorDTO.builder()
+                                .id(a.getId())
+                                .name(a.getName())
+                                .build())
+                        .collect(Collectors.toList());
+            });
         } catch (Exception e) {
             logger.error("Fejl ved hentning af alle skuespillere", e);
             throw new JpaException("Fejl ved hentning af alle skuespillere", e);
         }
     }
 
+    // Én side skuespillere med antal film og de mest populære titler (page starter ved 1)
+    public List<PersonSummaryDTO> getSummaries(PersonSort sort, int page, int size) {
+        if (page < 1 || size <= 0) {
+            throw new IllegalArgumentException("Page must be >= 1 and size must be > 0");
+        }
+        try {
+            return replicaRouter.read(emf, em -> SUMMARY_QUERY.page(em, sort, page, size));
+        } catch (Exception e) {
+            logger.error("Fejl ved hentning af skuespillere (sort: {}, page: {}, size: {})", sort.getParam(), page, size, e);
+            throw new JpaException("Fejl ved hentning af skuespillere", e);
+        }
+    }
+
     public Actor findByName(String name) {
         try (EntityManager em = emf.createEntityManager()) {
             TypedQuery<Actor> query = em.createQuery("SELECT a FROM Actor a WHERE a.name = :name", Actor.class);
             query.setParameter("name", name);
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
             return query.getSingleResult();
         } catch (Exception e) {
             logger.error("Fejl under hentning af skuespiller med navn: " + name, e);
             throw new JpaException("Der opstod en fejl under hentning af skuespiller", e);
         }
     }
+
+    private List<Long> findMovieIds(EntityManager em, Long actorId) {
+        return em.createQuery("SELECT m.id FROM Movie m JOIN m.actors a WHERE a.id = :actorId", Long.class)
+                .setParameter("actorId", actorId)
+                .getResultList();
+    }
 }
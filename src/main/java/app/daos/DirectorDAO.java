@@ -1,24 +1,34 @@
 package app.daos;
 
 import app.dtos.DirectorDTO;
+import app.dtos.PersonSummaryDTO;
 import app.entities.Director;
 import app.entities.Movie;
+import app.enums.PersonSort;
 import app.exceptions.JpaException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
+import org.hibernate.jpa.HibernateHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class DirectorDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(DirectorDAO.class);
     private static DirectorDAO instance;
+    private final ReadReplicaRouter replicaRouter = ReadReplicaRouter.getInstance();
     private static EntityManagerFactory emf;
+    private static final PersonSummaryQuery SUMMARY_QUERY = new PersonSummaryQuery("Director", "p.movies",
+            "SELECT director_id, title FROM (" +
+                    "SELECT m.director_id, m.title, ROW_NUMBER() OVER (PARTITION BY m.director_id ORDER BY m.popularity DESC, m.id DESC) AS rn " +
+                    "FROM movie m WHERE m.director_id IN (:ids)) t " +
+                    "WHERE rn <= :top ORDER BY director_id, rn");
 
     public static DirectorDAO getInstance(EntityManagerFactory _emf) {
         if (instance == null) {
@@ -59,6 +69,7 @@ public class DirectorDAO {
         try (EntityManager em = emf.createEntityManager()) {
             return em.createQuery("SELECT d FROM Director d WHERE d.name = :name", Director.class)
                     .setParameter("name", name)
+                    .setHint(HibernateHints.HINT_CACHEABLE, true)
                     .getSingleResult();
         } catch (Exception e) {
             logger.error("Fejl under søgning efter en instruktør med navn: {}", name, e);
@@ -83,11 +94,14 @@ public class DirectorDAO {
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
             Director director = em.find(Director.class, dto.getId());
+            List<Long> movieIds = List.of();
             if (director != null) {
                 director.setName(dto.getName());
                 em.merge(director);
+                movieIds = findMovieIds(em, director.getId());
             }
             em.getTransaction().commit();
+            MovieChangeFeed.getInstance().refresh(em, movieIds);
         } catch (Exception e) {
             logger.error("Fejl under opdatering af en instruktør", e);
             throw new JpaException("Der opstod en fejl under opdatering af en instruktør", e);
@@ -122,8 +136,11 @@ public class DirectorDAO {
 
         try (EntityManager em = emf.createEntityManager()) {
             em.getTransaction().begin();
-            em.merge(director);
+            Director merged = em.merge(director);
+            // merge kan omdøbe en eksisterende instruktør, så dennes film skal genindlæses
+            List<Long> movieIds = findMovieIds(em, merged.getId());
             em.getTransaction().commit();
+            MovieChangeFeed.getInstance().refresh(em, movieIds);
         } catch (Exception e) {
             logger.error("Fejl under merge/persist af en instruktør", e);
             throw new JpaException("Der opstod en fejl under merge eller persist af en instruktør", e);
@@ -135,37 +152,97 @@ public class DirectorDAO {
             EntityTransaction transaction = em.getTransaction();
             transaction.begin();
             Director director = em.find(Director.class, id);
+            List<Long> movieIds = List.of();
             if (director != null) {
+                movieIds = findMovieIds(em, id);
+                for (Movie movie : director.getMovies()) {
+                    movie.setDirector(null);
+                }
                 em.remove(director);
             }
             transaction.commit();
+            MovieChangeFeed.getInstance().refresh(em, movieIds);
         } catch (Exception e) {
             logger.error("Fejl under sletning af instruktør med ID: {}", id, e);
             throw new JpaException("Der opstod en fejl under sletning af en instruktør", e);
         }
     }
 
+    // Alle instruktører med deres film i to forespørgsler i alt - ikke én pr. instruktør
     public List<DirectorDTO> getAll() {
-        try (EntityManager em = emf.createEntityManager()) {
-            List<Director> directors = em.createQuery("SELECT d FROM Director d", Director.class).getResultList();
-
-            return directors.stream()
-                    .map(d -> {
-                        List<Movie> movies = em.createQuery("SELECT m FROM Movie m WHERE m.director.id = :directorId", Movie.class)
-                                .setParameter("directorId", d.getId())
-                                .getResultList();
-
-                        Set<Long> movieIds = movies.stream().map(Movie::getId).collect(Collectors.toSet());
-                        Set<String> movieTitles = movies.stream().map(Movie::getTitle).collect(Collectors.toSet());
-
-                        return DirectorDTO.builder()
-                                .id(d.getId())
-                                .name(d.getName())
-                                .movieIds(movieIds)
-                                .movieTitles(movieTitles)
-                                .build();
-                    })
-                    .toList();
+        try {
+            return replicaRouter.read(emf, em -> {
+                List<DirectorDTO> directors = em.createQuery(
+                        "SELECT new app.dtos.DirectorDTO(d.id, d.name) FROM Director d ORDER BY d.name, d.id", DirectorDTO.class)
+                        .getResultList();
+                List<Object[]> movies = em.createQuery(
+                        "SELECT m.director.id, m.id, m.title FROM Movie m WHERE m.director IS NOT NULL", Object[].class)
+                        .getResultList();
+                return attachMovies(directors, movies);
+            });
+        } catch (Exception e) {
+            logger.error("Fejl under hentning af alle instruktører", e);
+            throw new JpaException("Der opstod en fejl under hentning af alle instruktører", e);
+        }
+    }
+
+    // Én side instruktører sorteret efter navn; film hentes kun for instruktørerne på siden
+    public List<DirectorDTO> getPage(int page, int size) {
+        if (page < 1 || size <= 0) {
+            throw new IllegalArgumentException("Page must be >= 1 and size must be > 0");
+        }
+        try {
+            return replicaRouter.read(emf, em -> {
+                List<DirectorDTO> directors = em.createQuery(
+                        "SELECT new app.dtos.DirectorDTO(d.id, d.name) FROM Director d ORDER BY d.name, d.id", DirectorDTO.class)
+                        .setFirstResult((page - 1) * size)
+                        .setMaxResults(size)
+                        .getResultList();
+                if (directors.isEmpty()) {
+                    return directors;
+                }
+                List<Object[]> movies = em.createQuery(
+                        "SELECT m.director.id, m.id, m.title FROM Movie m WHERE m.director.id IN :ids", Object[].class)
+                        .setParameter("ids", directors.stream().map(DirectorDTO::getId).toList())
+                        .getResultList();
+                return attachMovies(directors, movies);
+            });
+        } catch (Exception e) {
+            logger.error("Fejl under hentning af instruktører (page: {}, size: {})", page, size, e);
+            throw new JpaException("Der opstod en fejl under hentning af instruktører", e);
+        }
+    }
+
+    // Én side instruktører med antal film og de mest populære titler (page starter ved 1)
+    public List<PersonSummaryDTO> getSummaries(PersonSort sort, int page, int size) {
+        if (page < 1 || size <= 0) {
+            throw new IllegalArgumentException("Page must be >= 1 and size must be > 0");
         }
+        try {
+            return replicaRouter.read(emf, em -> SUMMARY_QUERY.page(em, sort, page, size));
+        } catch (Exception e) {
+            logger.error("Fejl ved hentning af instruktører (sort: {}, page: {}, size: {})", sort.getParam(), page, size, e);
+            throw new JpaException("Der opstod en fejl under hentning af instruktører", e);
+        }
+    }
+
+    // rows er (instruktør-id, film-id, titel)
+    private static List<DirectorDTO> attachMovies(List<DirectorDTO> directors, List<Object[]> rows) {
+        Map<Long, DirectorDTO> byId = directors.stream()
+                .collect(Collectors.toMap(DirectorDTO::getId, Function.identity()));
+        for (Object[] row : rows) {
+            DirectorDTO director = byId.get((Long) row[0]);
+            if (director != null) {
+                director.getMovieIds().add((Long) row[1]);
+                director.getMovieTitles().add((String) row[2]);
+            }
+        }
+        return directors;
+    }
+
+    private List<Long> findMovieIds(EntityManager em, Long directorId) {
+        return em.createQuery("SELECT m.id FROM Movie m WHERE m.director.id = :directorId", Long.class)
+                .setParameter("directorId", directorId)
+                .getResultList();
     }
 }
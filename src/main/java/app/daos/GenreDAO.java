@@ -4,7 +4,9 @@ import app.exceptions.JpaException;
 import jakarta.persistence.*;
 import app.entities.Genre;
 import java.util.stream.Collectors;
+import java.util.List;
 import java.util.Set;
+import org.hibernate.jpa.HibernateHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +39,11 @@ public class GenreDAO {
             try {
                 transaction.begin();
                 Genre updatedGenre = em.merge(genre);
+                List<Long> movieIds = em.createQuery("SELECT m.id FROM Movie m JOIN m.genres g WHERE g.id = :genreId", Long.class)
+                        .setParameter("genreId", updatedGenre.getId())
+                        .getResultList();
                 transaction.commit();
+                MovieChangeFeed.getInstance().refresh(em, movieIds);
                 return updatedGenre;
             } catch (Exception e) {
                 if (transaction.isActive()) transaction.rollback();
@@ -66,6 +72,7 @@ public class GenreDAO {
         try (EntityManager em = emf.createEntityManager()) {
             return em.createQuery("SELECT g FROM Genre g WHERE g.genreId IN :ids", Genre.class)
                     .setParameter("ids", genreIds)
+                    .setHint(HibernateHints.HINT_CACHEABLE, true)
                     .getResultStream()
                     .collect(Collectors.toSet());
         } catch (Exception e) {
@@ -76,7 +83,9 @@ public class GenreDAO {
 
     public long countGenres() {
         try (EntityManager em = emf.createEntityManager()) {
-            return em.createQuery("SELECT COUNT(g) FROM Genre g", Long.class).getSingleResult();
+            return em.createQuery("SELECT COUNT(g) FROM Genre g", Long.class)
+                    .setHint(HibernateHints.HINT_CACHEABLE, true)
+                    .getSingleResult();
         } catch (Exception e) {
             logger.error("Fejl ved optælling af genrer", e);
             throw new JpaException("Fejl ved optælling af genrer", e);
@@ -0,0 +1,11 @@
+package app.daos;
+
+import app.dtos.MovieDTO;
+
+import java.util.List;
+
+// Gemmer én batch film fra indlæsningen og returnerer hvor mange der var nye
+@FunctionalInterface
+public interface IMovieBulkLoader {
+    int load(List<MovieDTO> movies);
+}
@@ -0,0 +1,14 @@
+package app.daos;
+
+import app.index.IndexedMovie;
+
+import java.util.List;
+import java.util.Set;
+
+// Én committet ændring af filmkataloget: nye eller ændrede film samt id'er på slettede film
+public record MovieChange(List<IndexedMovie> upserted, Set<Long> deletedIds) {
+
+    public boolean isEmpty() {
+        return upserted.isEmpty() && deletedIds.isEmpty();
+    }
+}
@@ -0,0 +1,55 @@
+package app.daos;
+
+import app.index.IndexedMovie;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// DAO'erne melder hver committet ændring af film, skuespillere, instruktører og genrer herigennem,
+// så indeks i hukommelsen kan opdateres løbende i stedet for at blive genopbygget
+public class MovieChangeFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieChangeFeed.class);
+    private static final MovieChangeFeed instance = new MovieChangeFeed();
+
+    private final List<MovieChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private MovieChangeFeed() {
+    }
+
+    public static MovieChangeFeed getInstance() {
+        return instance;
+    }
+
+    public void subscribe(MovieChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    // Kaldes efter commit. En fejl hos en lytter må ikke vælte den skrivning der allerede er gemt
+    public void publish(MovieChange change) {
+        if (change.isEmpty()) return;
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onMoviesChanged(change);
+            } catch (Exception e) {
+                logger.error("Fejl i {} ved opdatering med {} ændrede og {} slettede film",
+                        listener.getClass().getSimpleName(), change.upserted().size(), change.deletedIds().size(), e);
+            }
+        }
+    }
+
+    void moviesUpserted(List<IndexedMovie> movies) {
+        publish(new MovieChange(List.copyOf(movies), Set.of()));
+    }
+
+    // Genindlæser de berørte film fra databasen, fx når en skuespiller eller genre er omdøbt
+    void refresh(EntityManager em, Collection<Long> movieIds) {
+        if (movieIds.isEmpty()) return;
+        moviesUpserted(MovieDAO.loadIndexedMovies(em, movieIds));
+    }
+}
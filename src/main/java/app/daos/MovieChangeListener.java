@@ -0,0 +1,5 @@
+package app.daos;
+
+public interface MovieChangeListener {
+    void onMoviesChanged(MovieChange change);
+}
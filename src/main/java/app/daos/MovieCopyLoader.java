@@ -0,0 +1,254 @@
+package app.daos;
+
+import app.dtos.ActorDTO;
+import app.dtos.MovieDTO;
+import app.exceptions.JpaException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+// Indlæsning uden om JPA: hver batch streames med PostgreSQL COPY ind i midlertidige staging-tabeller og flettes
+// derefter ind i movie, actor, director, movie_genre og movie_actor med få mængdebaserede SQL-sætninger
+public class MovieCopyLoader implements IMovieBulkLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieCopyLoader.class);
+    private static final int COPY_CHUNK_CHARS = 64 * 1024;
+    private static MovieCopyLoader instance;
+    private static EntityManagerFactory emf;
+
+    // ON COMMIT DELETE ROWS tømmer tabellerne efter hver batch; selve tabellerne lever så længe forbindelsen gør
+    private static final String[] STAGING_TABLES = {
+            "CREATE TEMP TABLE IF NOT EXISTS staging_movie (imdb_id bigint, title text, duration int, overview text, " +
+                    "release_date text, adult boolean, backdrop_path text, poster_path text, popularity double precision, " +
+                    "original_language text, original_title text, vote_average double precision, vote_count int, " +
+                    "director_tmdb_id bigint) ON COMMIT DELETE ROWS",
+            "CREATE TEMP TABLE IF NOT EXISTS staging_director (tmdb_id bigint, name text) ON COMMIT DELETE ROWS",
+            "CREATE TEMP TABLE IF NOT EXISTS staging_actor (tmdb_id bigint, name text) ON COMMIT DELETE ROWS",
+            "CREATE TEMP TABLE IF NOT EXISTS staging_movie_genre (imdb_id bigint, genre_id int) ON COMMIT DELETE ROWS",
+            "CREATE TEMP TABLE IF NOT EXISTS staging_movie_actor (imdb_id bigint, actor_tmdb_id bigint) ON COMMIT DELETE ROWS"
+    };
+
+    // Nye id'er tages direkte fra de samme sekvenser som Hibernate bruger. Hver nextval springer en hel
+    // allokeringsblok frem, så der kommer huller i id'erne, men aldrig sammenfald med Hibernates blokke
+    private static final String[] MERGE_STATEMENTS = {
+            "INSERT INTO director (id, tmdb_id, name) " +
+                    "SELECT nextval('director_seq'), s.tmdb_id, s.name " +
+                    "FROM (SELECT DISTINCT ON (tmdb_id) tmdb_id, name FROM staging_director ORDER BY tmdb_id) s " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM director d WHERE d.tmdb_id = s.tmdb_id)",
+            "INSERT INTO actor (id, tmdb_id, name) " +
+                    "SELECT nextval('actor_seq'), s.tmdb_id, COALESCE(s.name, 'Ukendt') " +
+                    "FROM (SELECT DISTINCT ON (tmdb_id) tmdb_id, name FROM staging_actor ORDER BY tmdb_id) s " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM actor a WHERE a.tmdb_id = s.tmdb_id)",
+            "UPDATE movie m SET title = s.title, duration = s.duration, overview = s.overview, release_date = s.release_date, " +
+                    "adult = s.adult, backdrop_path = s.backdrop_path, poster_path = s.poster_path, popularity = s.popularity, " +
+                    "original_language = s.original_language, original_title = s.original_title, vote_average = s.vote_average, " +
+                    "vote_count = s.vote_count, director_id = d.id " +
+                    "FROM (SELECT DISTINCT ON (imdb_id) * FROM staging_movie ORDER BY imdb_id) s " +
+                    "LEFT JOIN director d ON d.tmdb_id = s.director_tmdb_id " +
+                    "WHERE m.imdb_id = s.imdb_id",
+            "INSERT INTO movie (id, imdb_id, title, duration, overview, release_date, adult, backdrop_path, poster_path, " +
+                    "popularity, original_language, original_title, vote_average, vote_count, director_id) " +
+                    "SELECT nextval('movie_seq'), s.imdb_id, s.title, s.duration, s.overview, s.release_date, s.adult, " +
+                    "s.backdrop_path, s.poster_path, s.popularity, s.original_language, s.original_title, s.vote_average, " +
+                    "s.vote_count, d.id " +
+                    "FROM (SELECT DISTINCT ON (imdb_id) * FROM staging_movie ORDER BY imdb_id) s " +
+                    "LEFT JOIN director d ON d.tmdb_id = s.director_tmdb_id " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM movie m WHERE m.imdb_id = s.imdb_id)",
+            // Forbindelserne til genrer og skuespillere erstattes helt for filmene i batchen
+            "DELETE FROM movie_genre mg USING movie m, staging_movie s WHERE mg.movie_id = m.id AND m.imdb_id = s.imdb_id",
+            "DELETE FROM movie_actor ma USING movie m, staging_movie s WHERE ma.movie_id = m.id AND m.imdb_id = s.imdb_id",
+            "INSERT INTO movie_genre (movie_id, genre_id) " +
+                    "SELECT DISTINCT m.id, g.id FROM staging_movie_genre s " +
+                    "JOIN movie m ON m.imdb_id = s.imdb_id JOIN genre g ON g.genre_id = s.genre_id",
+            "INSERT INTO movie_actor (movie_id, actor_id) " +
+                    "SELECT DISTINCT m.id, a.id FROM staging_movie_actor s " +
+                    "JOIN movie m ON m.imdb_id = s.imdb_id JOIN actor a ON a.tmdb_id = s.actor_tmdb_id"
+    };
+
+    private static final int INSERT_MOVIES = 3;   // index i MERGE_STATEMENTS for INSERT INTO movie
+
+    private MovieCopyLoader() {
+    }
+
+    public static MovieCopyLoader getInstance(EntityManagerFactory _emf) {
+        if (instance == null) {
+            emf = _emf;
+            instance = new MovieCopyLoader();
+        }
+        return instance;
+    }
+
+    @Override
+    public int load(List<MovieDTO> movies) {
+        long start = System.nanoTime();
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                Result result = em.unwrap(Session.class).doReturningWork(connection -> copyAndMerge(connection, movies));
+                em.getTransaction().commit();
+
+                // COPY går uden om Hibernate, så second-level cachen kender ikke de nye personer og forbindelser
+                emf.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+                // Filterindekset får de berørte film, præcis som ved MovieDAO.create
+                MovieChangeFeed.getInstance().refresh(em, result.movieIds());
+
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                logger.info("💾 COPY: {} film ({} nye) og {} rækker i staging på {} s - {} rækker/sek",
+                        result.movieIds().size(), result.inserted(), result.stagedRows(), String.format("%.2f", seconds),
+                        Math.round(result.stagedRows() / Math.max(seconds, 0.001)));
+                return result.inserted();
+            } catch (RuntimeException e) {
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                throw e;
+            }
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved COPY-indlæsning af " + movies.size() + " film", e);
+        }
+    }
+
+    private record Result(List<Long> movieIds, int inserted, long stagedRows) {
+    }
+
+    private Result copyAndMerge(Connection connection, List<MovieDTO> movies) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : STAGING_TABLES) {
+                statement.execute(ddl);
+            }
+        }
+
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        long stagedRows = 0;
+        stagedRows += copy(copyManager, "staging_movie (imdb_id, title, duration, overview, release_date, adult, backdrop_path, " +
+                "poster_path, popularity, original_language, original_title, vote_average, vote_count, director_tmdb_id)", movies, (movie, row) -> {
+            row.add(movie.getImdbId()).add(movie.getTitle()).add(movie.getDuration()).add(movie.getOverview())
+                    .add(movie.getReleaseDate()).add(movie.getIsAdult() != null && movie.getIsAdult())
+                    .add(movie.getBackdropPath()).add(movie.getPosterPath()).add(orZero(movie.getPopularity()))
+                    .add(movie.getOriginalLanguage()).add(movie.getOriginalTitle()).add(orZero(movie.getVoteAverage()))
+                    .add(movie.getVoteCount() != null ? movie.getVoteCount() : 0)
+                    .add(movie.getDirector() != null ? movie.getDirector().getId() : null)
+                    .end();
+        });
+        stagedRows += copy(copyManager, "staging_director (tmdb_id, name)", movies, (movie, row) -> {
+            if (movie.getDirector() != null && movie.getDirector().getId() != null) {
+                row.add(movie.getDirector().getId()).add(movie.getDirector().getName()).end();
+            }
+        });
+        stagedRows += copy(copyManager, "staging_actor (tmdb_id, name)", movies, (movie, row) -> {
+            for (ActorDTO actor : actors(movie)) {
+                row.add(actor.getId()).add(actor.getName()).end();
+            }
+        });
+        stagedRows += copy(copyManager, "staging_movie_genre (imdb_id, genre_id)", movies, (movie, row) -> {
+            for (Integer genreId : movie.getGenreIds() != null ? movie.getGenreIds() : Set.<Integer>of()) {
+                row.add(movie.getImdbId()).add(genreId).end();
+            }
+        });
+        stagedRows += copy(copyManager, "staging_movie_actor (imdb_id, actor_tmdb_id)", movies, (movie, row) -> {
+            for (ActorDTO actor : actors(movie)) {
+                row.add(movie.getImdbId()).add(actor.getId()).end();
+            }
+        });
+
+        int inserted;
+        try (Statement statement = connection.createStatement()) {
+            int[] counts = new int[MERGE_STATEMENTS.length];
+            for (int i = 0; i < MERGE_STATEMENTS.length; i++) {
+                counts[i] = statement.executeUpdate(MERGE_STATEMENTS[i]);
+            }
+            inserted = counts[INSERT_MOVIES];
+        }
+
+        List<Long> movieIds = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT m.id FROM movie m JOIN staging_movie s ON s.imdb_id = m.imdb_id")) {
+            while (rs.next()) {
+                movieIds.add(rs.getLong(1));
+            }
+        }
+        return new Result(movieIds, inserted, stagedRows);
+    }
+
+    // Streamer rækkerne til COPY i bidder, så hele batchen aldrig ligger som én stor streng
+    private static long copy(CopyManager copyManager, String table, List<MovieDTO> movies, RowSource source) throws SQLException {
+        CopyIn copyIn = copyManager.copyIn("COPY " + table + " FROM STDIN WITH (FORMAT csv)");
+        try {
+            CsvRow row = new CsvRow();
+            for (MovieDTO movie : movies) {
+                source.write(movie, row);
+                if (row.buffer.length() >= COPY_CHUNK_CHARS) {
+                    row.flushTo(copyIn);
+                }
+            }
+            row.flushTo(copyIn);
+            copyIn.endCopy();
+            return row.rows;
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static Set<ActorDTO> actors(MovieDTO movie) {
+        if (movie.getActors() == null) return Set.of();
+        Set<ActorDTO> actors = new HashSet<>();
+        for (ActorDTO actor : movie.getActors()) {
+            if (actor != null && actor.getId() != null) actors.add(actor);
+        }
+        return actors;
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    @FunctionalInterface
+    private interface RowSource {
+        void write(MovieDTO movie, CsvRow row);
+    }
+
+    // CSV som COPY forventer det: null er et tomt felt uden anførselstegn, tekst altid i anførselstegn
+    private static class CsvRow {
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean firstField = true;
+        private long rows;
+
+        CsvRow add(Object value) {
+            if (!firstField) buffer.append(',');
+            firstField = false;
+            if (value instanceof String text) {
+                buffer.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else if (value != null) {
+                buffer.append(value);
+            }
+            return this;
+        }
+
+        void end() {
+            buffer.append('\n');
+            firstField = true;
+            rows++;
+        }
+
+        void flushTo(CopyIn copyIn) throws SQLException {
+            if (buffer.isEmpty()) return;
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+}
@@ -2,24 +2,59 @@ package app.daos;
 
 import app.dtos.*;
 import app.entities.*;
+import app.enums.MovieField;
+import app.enums.MovieSort;
+import app.enums.SuggestionType;
 import app.exceptions.JpaException;
+import app.index.IndexedMovie;
+import app.index.MovieIndex;
+import app.index.SearchDocument;
+import app.index.SearchDocumentSource;
+import app.index.SuggestionSource;
+import app.utils.ApiProps;
 import jakarta.persistence.*;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
-public class MovieDAO {
+public class MovieDAO implements SearchDocumentSource, SuggestionSource {
 
     private static final Logger logger = LoggerFactory.getLogger(MovieDAO.class);
 
+    // Kolonnerne bag de almindelige felter; databaseId hentes altid
+    private static final Map<MovieField, String> COLUMNS = new EnumMap<>(Map.ofEntries(
+            Map.entry(MovieField.IMDB_ID, "m.imdbId"),
+            Map.entry(MovieField.TITLE, "m.title"),
+            Map.entry(MovieField.DURATION, "m.duration"),
+            Map.entry(MovieField.OVERVIEW, "m.overview"),
+            Map.entry(MovieField.RELEASE_DATE, "m.releaseDate"),
+            Map.entry(MovieField.IS_ADULT, "m.adult"),
+            Map.entry(MovieField.BACKDROP_PATH, "m.backdropPath"),
+            Map.entry(MovieField.POSTER_PATH, "m.posterPath"),
+            Map.entry(MovieField.POPULARITY, "m.popularity"),
+            Map.entry(MovieField.ORIGINAL_LANGUAGE, "m.originalLanguage"),
+            Map.entry(MovieField.ORIGINAL_TITLE, "m.originalTitle"),
+            Map.entry(MovieField.VOTE_AVERAGE, "m.voteAverage"),
+            Map.entry(MovieField.VOTE_COUNT, "m.voteCount")));
+
+    private static final int CREATE_BATCH_SIZE = 1000;
+    private static final int IN_CHUNK_SIZE = 5000;
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     private static EntityManagerFactory emf;
     private static MovieDAO instance;
+    private final ReadReplicaRouter replicaRouter = ReadReplicaRouter.getInstance();
 
     private MovieDAO(EntityManagerFactory emf){
         this.emf = emf;
@@ -33,64 +68,240 @@ public class MovieDAO {
     }
 
     public List<MovieDTO> getAllMovies() {
-        try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<Movie> query = em.createQuery(
-                    "SELECT DISTINCT m FROM Movie m " +
-                            "LEFT JOIN FETCH m.genres " +
-                            "LEFT JOIN FETCH m.actors " +
-                            "LEFT JOIN FETCH m.director " +
-                            "ORDER BY m.releaseDate ASC", Movie.class);
-            List<Movie> movies = query.getResultList();
-            logger.info("Hentede {} film fra databasen.", movies.size());
-            return movies.stream().map(MovieDTO::new).toList();
+        try {
+            return replicaRouter.read(emf, em -> {
+                TypedQuery<Movie> query = em.createQuery(
+                        "SELECT DISTINCT m FROM Movie m " +
+                                "LEFT JOIN FETCH m.genres " +
+                                "LEFT JOIN FETCH m.actors " +
+                                "LEFT JOIN FETCH m.director " +
+                                "ORDER BY m.releaseDate ASC", Movie.class);
+                List<Movie> movies = query.getResultList();
+                logger.info("Hentede {} film fra databasen.", movies.size());
+                return movies.stream().map(MovieDTO::new).toList();
+            });
         } catch (Exception e) {
             throw new JpaException("Fejl ved hentning af alle film", e);
         }
     }
 
-    public List<MovieDTO> getFilteredMovies(Map<String, List<String>> filters, int page, int pageSize) {
-        try (EntityManager em = emf.createEntityManager()) {
-            StringBuilder jpql = new StringBuilder("SELECT DISTINCT m FROM Movie m LEFT JOIN m.genres g LEFT JOIN m.actors a LEFT JOIN m.directors d WHERE 1=1");
-
-            if (filters.containsKey("genre")) jpql.append(" AND g.name IN :genres");
-            if (filters.containsKey("year")) jpql.append(" AND FUNCTION('YEAR', m.releaseDate) IN :years");
-            if (filters.containsKey("language")) jpql.append(" AND m.originalLanguage IN :languages");
-            if (filters.containsKey("rating")) jpql.append(" AND m.voteAverage >= :minRating");
-            if (filters.containsKey("duration")) jpql.append(" AND m.duration <= :maxDuration");
-            if (filters.containsKey("director")) jpql.append(" AND d.name IN :directors");
-            if (filters.containsKey("title")) jpql.append(" AND LOWER(m.title) LIKE :title");
-            if (filters.containsKey("actor")) jpql.append(" AND a.name IN :actors");
-
-            TypedQuery<Movie> query = em.createQuery(jpql.toString(), Movie.class);
-
-            if (filters.containsKey("genre")) query.setParameter("genres", filters.get("genre"));
-            if (filters.containsKey("year")) query.setParameter("years", filters.get("year").stream().map(Integer::parseInt).toList());
-            if (filters.containsKey("language")) query.setParameter("languages", filters.get("language"));
-            if (filters.containsKey("rating")) query.setParameter("minRating", Double.parseDouble(filters.get("rating").get(0)));
-            if (filters.containsKey("duration")) query.setParameter("maxDuration", Integer.parseInt(filters.get("duration").get(0)));
-            if (filters.containsKey("director")) query.setParameter("directors", filters.get("director"));
-            if (filters.containsKey("title")) query.setParameter("title", "%" + filters.get("title").get(0).toLowerCase() + "%");
-            if (filters.containsKey("actor")) query.setParameter("actors", filters.get("actor"));
-
-            query.setFirstResult((page - 1) * pageSize);
-            query.setMaxResults(pageSize);
-
-            List<Movie> result = query.getResultList();
-            logger.info("Filtreret filmhentning returnerede {} resultater.", result.size());
-            return result.stream().map(MovieDTO::new).toList();
+    // Med cursor hentes siden efter cursoren (keyset), ellers bruges page som offset. Genre- og skuespillerfiltre
+    // er subqueries, så forespørgslen giver én række pr. film og kun id'er; felterne hentes bagefter med samme EntityManager
+    public List<MovieDTO> getFilteredMovies(Map<String, List<String>> filters, MovieSort sort, MovieCursor cursor, int page, int pageSize,
+                                            Set<MovieField> fields) {
+        try {
+            return replicaRouter.read(emf, em -> {
+                StringBuilder jpql = new StringBuilder("SELECT m.id FROM Movie m WHERE 1=1");
+
+                if (filters.containsKey("genre")) jpql.append(" AND m.id IN (SELECT gm.id FROM Movie gm JOIN gm.genres g WHERE g.name IN :genres)");
+                if (filters.containsKey("year")) jpql.append(" AND SUBSTRING(m.releaseDate, 1, 4) IN :years");
+                if (filters.containsKey("language")) jpql.append(" AND m.originalLanguage IN :languages");
+                if (filters.containsKey("rating")) jpql.append(" AND m.voteAverage >= :minRating");
+                if (filters.containsKey("duration")) jpql.append(" AND m.duration <= :maxDuration");
+                if (filters.containsKey("director")) jpql.append(" AND m.director.name IN :directors");
+                if (filters.containsKey("title")) jpql.append(" AND LOWER(m.title) LIKE :title ESCAPE '!'");
+                if (filters.containsKey("actor")) jpql.append(" AND m.id IN (SELECT am.id FROM Movie am JOIN am.actors a WHERE a.name IN :actors)");
+                if (cursor != null) jpql.append(" AND ").append(sort.getJpqlSeek(cursor.key() == null));
+                jpql.append(" ORDER BY ").append(sort.getJpqlOrderBy());
+
+                TypedQuery<Long> query = em.createQuery(jpql.toString(), Long.class);
+
+                if (filters.containsKey("genre")) query.setParameter("genres", filters.get("genre"));
+                if (filters.containsKey("year")) query.setParameter("years", filters.get("year").stream().map(Integer::parseInt).map(String::valueOf).toList());
+                if (filters.containsKey("language")) query.setParameter("languages", filters.get("language"));
+                if (filters.containsKey("rating")) query.setParameter("minRating", Double.parseDouble(filters.get("rating").get(0)));
+                if (filters.containsKey("duration")) query.setParameter("maxDuration", Integer.parseInt(filters.get("duration").get(0)));
+                if (filters.containsKey("director")) query.setParameter("directors", filters.get("director"));
+                if (filters.containsKey("title")) query.setParameter("title", "%" + escapeLike(filters.get("title").get(0).toLowerCase()) + "%");
+                if (filters.containsKey("actor")) query.setParameter("actors", filters.get("actor"));
+                if (cursor != null) setCursorParameters(query, cursor);
+
+                if (cursor == null) query.setFirstResult((page - 1) * pageSize);
+                query.setMaxResults(pageSize);
+
+                List<Long> ids = query.getResultList();
+                logger.info("Filtreret filmhentning returnerede {} resultater.", ids.size());
+                return loadByIds(em, ids, fields);
+            });
         } catch (Exception e) {
             throw new JpaException("Fejl ved hentning af filtrerede film", e);
         }
     }
 
+    // % og _ i en søgetekst er bogstavelige tegn, ligesom i MovieIndex' delstrengssøgning
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // Henter de angivne film med genrer, skuespillere og instruktør i én forespørgsel, i samme rækkefølge som ids
+    public List<MovieDTO> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return replicaRouter.read(emf, em -> loadByIds(em, ids));
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved hentning af film baseret på IDs", e);
+        }
+    }
+
+    private static List<MovieDTO> loadByIds(EntityManager em, List<Long> ids) {
+        List<Movie> movies = em.createQuery(
+                "SELECT DISTINCT m FROM Movie m " +
+                        "LEFT JOIN FETCH m.genres " +
+                        "LEFT JOIN FETCH m.actors " +
+                        "LEFT JOIN FETCH m.director " +
+                        "WHERE m.id IN :ids", Movie.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        Map<Long, MovieDTO> byId = movies.stream()
+                .collect(Collectors.toMap(Movie::getId, MovieDTO::new));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Hele kataloget med konstant hukommelse: id'erne streames fra en databasecursor, og filmene hentes
+    // og gives videre i bidder, hvorefter persistence-konteksten ryddes. Returnerer antal film
+    public int exportMovies(Consumer<MovieDTO> consumer) {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            em.getTransaction().begin();   // PgJDBC bruger kun en cursor med fetch size inden for en transaktion
+            try (Stream<Long> idStream = em.createQuery("SELECT m.id FROM Movie m ORDER BY m.id", Long.class)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_CHUNK_SIZE)
+                    .getResultStream()) {
+                int exported = 0;
+                List<Long> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+                Iterator<Long> ids = idStream.iterator();
+                while (ids.hasNext()) {
+                    chunk.add(ids.next());
+                    if (chunk.size() == EXPORT_CHUNK_SIZE || !ids.hasNext()) {
+                        List<MovieDTO> movies = loadByIds(em, chunk);
+                        movies.forEach(consumer);
+                        exported += movies.size();
+                        chunk.clear();
+                        em.clear();
+                    }
+                }
+                em.getTransaction().commit();
+                return exported;
+            } finally {
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            }
+        } catch (UncheckedIOException e) {
+            throw e;   // Klienten afbrød - ikke en databasefejl
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved eksport af film", e);
+        }
+    }
+
+    // Som findByIds, men kun med de valgte felter: én smal projektion af kolonnerne, og genrer og
+    // skuespillere hentes kun hvis de er valgt. fields == null giver hele filmen
+    public List<MovieDTO> findByIds(List<Long> ids, Set<MovieField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return replicaRouter.read(emf, em -> loadByIds(em, ids, fields));
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved hentning af film baseret på IDs", e);
+        }
+    }
+
+    // Kaldes med den EntityManager id'erne blev fundet med, så en side kun låner én forbindelse og læser
+    // id'er og felter fra samme database
+    private static List<MovieDTO> loadByIds(EntityManager em, List<Long> ids, Set<MovieField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (fields == null) {
+            return loadByIds(em, ids);
+        }
+        Set<MovieField> sources = EnumSet.noneOf(MovieField.class);
+        fields.forEach(field -> sources.add(field.getSource()));
+        List<MovieField> columns = sources.stream().filter(field -> COLUMNS.containsKey(field)).toList();
+
+        StringBuilder jpql = new StringBuilder("SELECT m.id");
+        columns.forEach(field -> jpql.append(", ").append(COLUMNS.get(field)));
+        if (sources.contains(MovieField.DIRECTOR)) jpql.append(", d.id, d.name");
+        jpql.append(" FROM Movie m");
+        if (sources.contains(MovieField.DIRECTOR)) jpql.append(" LEFT JOIN m.director d");
+        jpql.append(" WHERE m.id IN :ids");
+
+        Map<Long, MovieDTO> byId = new HashMap<>();
+        for (Object[] row : em.createQuery(jpql.toString(), Object[].class).setParameter("ids", ids).getResultList()) {
+            MovieDTO dto = new MovieDTO();
+            dto.setDatabaseId((Long) row[0]);
+            for (int i = 0; i < columns.size(); i++) {
+                setColumn(dto, columns.get(i), row[i + 1]);
+            }
+            if (sources.contains(MovieField.DIRECTOR) && row[columns.size() + 1] != null) {
+                dto.setDirector(new DirectorDTO((Long) row[columns.size() + 1], (String) row[columns.size() + 2]));
+            }
+            byId.put(dto.getDatabaseId(), dto);
+        }
+
+        if (sources.contains(MovieField.GENRE_IDS) || sources.contains(MovieField.GENRE_NAMES)) {
+            byId.values().forEach(dto -> {
+                dto.setGenreIds(new HashSet<>());
+                dto.setGenreNames(new ArrayList<>());
+            });
+            em.createQuery("SELECT m.id, g.genreId, g.name FROM Movie m JOIN m.genres g WHERE m.id IN :ids", Object[].class)
+                    .setParameter("ids", ids)
+                    .getResultList()
+                    .forEach(row -> {
+                        MovieDTO dto = byId.get((Long) row[0]);
+                        dto.getGenreIds().add((Integer) row[1]);
+                        dto.getGenreNames().add((String) row[2]);
+                    });
+        }
+        if (sources.contains(MovieField.ACTORS)) {
+            byId.values().forEach(dto -> dto.setActors(new HashSet<>()));
+            em.createQuery("SELECT m.id, a.id, a.name FROM Movie m JOIN m.actors a WHERE m.id IN :ids", Object[].class)
+                    .setParameter("ids", ids)
+                    .getResultList()
+                    .forEach(row -> byId.get((Long) row[0]).getActors().add(
+                            new ActorDTO((Long) row[1], (String) row[2], Collections.emptySet(), Collections.emptySet())));
+        }
+
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static void setColumn(MovieDTO dto, MovieField field, Object value) {
+        switch (field) {
+            case IMDB_ID -> dto.setImdbId((Long) value);
+            case TITLE -> dto.setTitle((String) value);
+            case DURATION -> dto.setDuration((Integer) value);
+            case OVERVIEW -> dto.setOverview((String) value);
+            case RELEASE_DATE -> dto.setReleaseDate((String) value);
+            case IS_ADULT -> dto.setIsAdult((Boolean) value);
+            case BACKDROP_PATH -> dto.setBackdropPath((String) value);
+            case POSTER_PATH -> dto.setPosterPath((String) value);
+            case POPULARITY -> dto.setPopularity((Double) value);
+            case ORIGINAL_LANGUAGE -> dto.setOriginalLanguage((String) value);
+            case ORIGINAL_TITLE -> dto.setOriginalTitle((String) value);
+            case VOTE_AVERAGE -> dto.setVoteAverage((Double) value);
+            case VOTE_COUNT -> dto.setVoteCount((Integer) value);
+            default -> throw new IllegalArgumentException("Ikke en kolonne: " + field);
+        }
+    }
+
     public FilterCountDTO getFilteredCounts(Map<String, List<String>> filters) {
+        MovieIndex index = MovieIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.getFilterCounts(filters);
+        }
         try {
             List<MovieDTO> allMovies = getAllMovies();
             List<MovieDTO> filtered = allMovies.stream()
                     .filter(movie -> filters.entrySet().stream()
                             .allMatch(entry -> matchesFilter(entry.getKey(), entry.getValue(), movie)))
                     .toList();
-            return calculateFilterCounts(filtered, filters);
+            return calculateFilterCounts(filtered, allMovies, filters);
         } catch (Exception e) {
             throw new JpaException("Fejl ved beregning af filtertællinger", e);
         }
@@ -110,8 +321,7 @@ public class MovieDAO {
         };
     }
 
-    private FilterCountDTO calculateFilterCounts(List<MovieDTO> filtered, Map<String, List<String>> filters) {
-        List<MovieDTO> all = getAllMovies();
+    private FilterCountDTO calculateFilterCounts(List<MovieDTO> filtered, List<MovieDTO> all, Map<String, List<String>> filters) {
         Map<String, Integer> genreCount = countBy(filtered, all, filters, "genre", MovieDTO::getGenreNames);
         Map<String, Integer> yearCount = countBy(filtered, all, filters, "year", m -> List.of(String.valueOf(m.getReleaseYear())));
         Map<String, Integer> languageCount = countBy(filtered, all, filters, "language", m -> List.of(m.getOriginalLanguage()));
@@ -129,87 +339,251 @@ public class MovieDAO {
         return countMap;
     }
 
-    public void create(List<MovieDTO> movieDTOList) {
-        EntityManager em = emf.createEntityManager();
-        Map<Long, Actor> actorCache = new HashMap<>();
-        Map<Long, Director> directorCache = new HashMap<>();
-        Set<Long> seenImdbIds = new HashSet<>();
+    // Henter filmene som kompakte rækker til filterindekset: tre smalle forespørgsler i stedet for én fetch-join
+    public List<IndexedMovie> getIndexedMovies() {
+        try (EntityManager em = emf.createEntityManager()) {
+            List<IndexedMovie> movies = loadIndexedMovies(em, null);
+            logger.info("Hentede {} film til filterindekset.", movies.size());
+            return movies;
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved hentning af film til filterindekset", e);
+        }
+    }
+
+    // Titler og beskrivelser til søgeindekset. Hele kataloget streames med en databasecursor, så
+    // beskrivelserne aldrig ligger i hukommelsen på én gang
+    @Override
+    public void loadSearchDocuments(Collection<Long> ids, Consumer<SearchDocument> consumer) {
+        String select = "SELECT m.id, m.title, m.originalTitle, m.overview, m.popularity FROM Movie m";
+        try (EntityManager em = emf.createEntityManager()) {
+            if (ids == null) {
+                em.getTransaction().begin();   // Fetch size virker kun inden for en transaktion i PgJDBC
+                try (Stream<Object[]> rows = em.createQuery(select, Object[].class)
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_CHUNK_SIZE)
+                        .getResultStream()) {
+                    rows.map(MovieDAO::toSearchDocument).forEach(consumer);
+                } finally {
+                    em.getTransaction().rollback();
+                }
+                return;
+            }
+            inChunks(new ArrayList<>(ids), chunk -> em.createQuery(select + " WHERE m.id IN :ids", Object[].class)
+                    .setParameter("ids", chunk)
+                    .getResultList())
+                    .forEach(row -> consumer.accept(toSearchDocument(row)));
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved hentning af film til søgeindekset", e);
+        }
+    }
+
+    // Navne og vægte til autocomplete - én grupperet forespørgsel pr. type
+    @Override
+    public Map<String, Double> loadSuggestions(SuggestionType type) {
+        try (EntityManager em = emf.createEntityManager()) {
+            Map<String, Double> suggestions = new HashMap<>();
+            for (Object[] row : em.createQuery(type.getJpql(), Object[].class).getResultList()) {
+                suggestions.put((String) row[0], row[1] != null ? ((Number) row[1]).doubleValue() : 0.0);
+            }
+            return suggestions;
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved hentning af forslag til autocomplete", e);
+        }
+    }
+
+    private static SearchDocument toSearchDocument(Object[] row) {
+        return new SearchDocument((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (Double) row[4]);
+    }
+
+    // ids == null henter hele kataloget
+    static List<IndexedMovie> loadIndexedMovies(EntityManager em, Collection<Long> ids) {
+        String where = ids != null ? " WHERE m.id IN :ids" : "";
+        Map<Long, List<String>> genresByMovie = groupByMovie(withIds(em.createQuery(
+                "SELECT m.id, g.name FROM Movie m JOIN m.genres g" + where, Object[].class), ids).getResultList());
+        Map<Long, List<String>> actorsByMovie = groupByMovie(withIds(em.createQuery(
+                "SELECT m.id, a.name FROM Movie m JOIN m.actors a" + where, Object[].class), ids).getResultList());
+
+        List<Object[]> rows = withIds(em.createQuery(
+                "SELECT m.id, m.title, m.releaseDate, m.originalLanguage, m.voteAverage, m.popularity, d.name " +
+                        "FROM Movie m LEFT JOIN m.director d" + where + " ORDER BY m.id", Object[].class), ids).getResultList();
+
+        return rows.stream()
+                .map(row -> new IndexedMovie(
+                        (Long) row[0],
+                        (String) row[1],
+                        (String) row[2],
+                        (String) row[3],
+                        (Double) row[4],
+                        (Double) row[5],
+                        (String) row[6],
+                        genresByMovie.getOrDefault((Long) row[0], List.of()),
+                        actorsByMovie.getOrDefault((Long) row[0], List.of())))
+                .toList();
+    }
+
+    private static <T> TypedQuery<T> withIds(TypedQuery<T> query, Collection<Long> ids) {
+        return ids != null ? query.setParameter("ids", ids) : query;
+    }
+
+    private static Map<Long, List<String>> groupByMovie(List<Object[]> pairs) {
+        Map<Long, List<String>> grouped = new HashMap<>();
+        for (Object[] pair : pairs) {
+            grouped.computeIfAbsent((Long) pair[0], id -> new ArrayList<>()).add((String) pair[1]);
+        }
+        return grouped;
+    }
+
+    private static IndexedMovie toIndexedMovie(Movie movie) {
+        return new IndexedMovie(
+                movie.getId(),
+                movie.getTitle(),
+                movie.getReleaseDate(),
+                movie.getOriginalLanguage(),
+                movie.getVoteAverage(),
+                movie.getPopularity(),
+                movie.getDirector() != null ? movie.getDirector().getName() : null,
+                movie.getGenres() != null ? movie.getGenres().stream().map(Genre::getName).toList() : List.of(),
+                movie.getActors() != null ? movie.getActors().stream().map(Actor::getName).toList() : List.of());
+    }
+
+    // Gemmer film i transaktioner af CREATE_BATCH_SIZE og returnerer antallet af nye film.
+    // Skuespillere og instruktører findes via deres TMDB-id, så samme person kun oprettes én gang på tværs af kald
+    public int create(List<MovieDTO> movieDTOList) {
         int saved = 0;
-        int total = movieDTOList.size();
+        try (EntityManager em = emf.createEntityManager()) {
+            for (int from = 0; from < movieDTOList.size(); from += CREATE_BATCH_SIZE) {
+                List<MovieDTO> batch = movieDTOList.subList(from, Math.min(from + CREATE_BATCH_SIZE, movieDTOList.size()));
+                saved += createBatch(em, batch);
+                em.clear();
+            }
+            logger.info("✅ Gemte {} film.", saved);
+            return saved;
+        } catch (Exception e) {
+            throw new JpaException("Fejl ved oprettelse af film.", e);
+        }
+    }
 
+    private int createBatch(EntityManager em, List<MovieDTO> batch) {
+        List<IndexedMovie> committed = new ArrayList<>();
+        long start = System.nanoTime();
+        long rows = 0;   // rækker i movie, movie_genre og movie_actor
         try {
+            // Større JDBC-batches end til almindelige requests: én film giver op mod 20-30 rækker i movie_actor
+            em.unwrap(Session.class).setJdbcBatchSize(ApiProps.INGEST_JDBC_BATCH_SIZE);
             em.getTransaction().begin();
             Map<Integer, Genre> genreMap = em.createQuery("SELECT g FROM Genre g", Genre.class)
                     .getResultList().stream()
                     .collect(Collectors.toMap(Genre::getGenreId, g -> g));
 
-            for (MovieDTO dto : movieDTOList) {
-                if (seenImdbIds.contains(dto.getImdbId())) continue;
-                seenImdbIds.add(dto.getImdbId());
-
-                try {
-                    Movie movie = new Movie();
-                    movie.setImdbId(dto.getImdbId());
-                    movie.setTitle(dto.getTitle());
-                    movie.setDuration(dto.getDuration());
-                    movie.setOverview(dto.getOverview());
-                    movie.setReleaseDate(dto.getReleaseDate());
-                    movie.setAdult(dto.getIsAdult());
-                    movie.setBackdropPath(dto.getBackdropPath());
-                    movie.setPosterPath(dto.getPosterPath());
-                    movie.setPopularity(dto.getPopularity());
-                    movie.setOriginalLanguage(dto.getOriginalLanguage());
-                    movie.setOriginalTitle(dto.getOriginalTitle());
-                    movie.setVoteAverage(dto.getVoteAverage());
-                    movie.setVoteCount(dto.getVoteCount());
-
-                    DirectorDTO dirDTO = dto.getDirector();
-                    if (dirDTO != null) {
-                        Director director = directorCache.computeIfAbsent(
-                                dirDTO.getId(),
-                                id -> em.merge(new Director(dirDTO))
-                        );
-                        movie.setDirector(director);
-                    }
+            // Film der allerede er gemt (fx ved genoptagelse fra journalen) springes over i stedet for at fejle på imdb_id
+            Set<Long> seenImdbIds = new HashSet<>(inChunks(batch.stream().map(MovieDTO::getImdbId).distinct().toList(),
+                    ids -> em.createQuery("SELECT m.imdbId FROM Movie m WHERE m.imdbId IN :ids", Long.class)
+                            .setParameter("ids", ids)
+                            .getResultList()));
+
+            Map<Long, Actor> actors = findOrCreateActors(em, batch);
+            Map<Long, Director> directors = findOrCreateDirectors(em, batch);
+
+            for (MovieDTO dto : batch) {
+                if (!seenImdbIds.add(dto.getImdbId())) continue;
+
+                Movie movie = new Movie();
+                movie.setImdbId(dto.getImdbId());
+                movie.setTitle(dto.getTitle());
+                movie.setDuration(dto.getDuration());
+                movie.setOverview(dto.getOverview());
+                movie.setReleaseDate(dto.getReleaseDate());
+                movie.setAdult(dto.getIsAdult() != null && dto.getIsAdult());
+                movie.setBackdropPath(dto.getBackdropPath());
+                movie.setPosterPath(dto.getPosterPath());
+                movie.setPopularity(dto.getPopularity() != null ? dto.getPopularity() : 0.0);
+                movie.setOriginalLanguage(dto.getOriginalLanguage());
+                movie.setOriginalTitle(dto.getOriginalTitle());
+                movie.setVoteAverage(dto.getVoteAverage() != null ? dto.getVoteAverage() : 0.0);
+                movie.setVoteCount(dto.getVoteCount() != null ? dto.getVoteCount() : 0);
+
+                if (dto.getDirector() != null) {
+                    movie.setDirector(directors.get(dto.getDirector().getId()));
+                }
 
-                    Set<Genre> genres = dto.getGenreIds().stream()
-                            .map(genreMap::get)
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toSet());
-                    movie.setGenres(genres);
-
-                    Set<Actor> actors = dto.getActors().stream()
-                            .map(actorDTO -> actorCache.computeIfAbsent(
-                                    actorDTO.getId(),
-                                    id -> em.merge(new Actor(actorDTO))
-                            ))
-                            .collect(Collectors.toSet());
-                    movie.setActors(actors);
-
-                    em.persist(movie);
-                    saved++;
-
-                    if (saved % 1000 == 0) {
-                        em.getTransaction().commit();
-                        em.clear();
-                        System.out.println("💾 [" + java.time.LocalTime.now().withNano(0) + "] Gemt film " + saved + " / " + total);
-                        em.getTransaction().begin();
-                    }
+                Set<Genre> genres = dto.getGenreIds() == null ? new HashSet<>() : dto.getGenreIds().stream()
+                        .map(genreMap::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet());
+                movie.setGenres(genres);
 
-                } catch (Exception persistException) {
-                    persistException.printStackTrace();
-                    logger.warn("Kunne ikke persiste film: {}", dto.getTitle(), persistException);
-                }
+                movie.setActors(dto.getActors() == null ? new HashSet<>() : dto.getActors().stream()
+                        .map(actorDTO -> actors.get(actorDTO.getId()))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()));
+
+                em.persist(movie);
+                committed.add(toIndexedMovie(movie));
+                rows += 1 + movie.getGenres().size() + movie.getActors().size();
             }
 
             em.getTransaction().commit();
-            logger.info("✅ Gemte i alt {} film.", saved);
-        } catch (Exception e) {
+            MovieChangeFeed.getInstance().moviesUpserted(committed);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            logger.info("💾 Gemte {} film ({} rækker) på {} s - {} rækker/sek",
+                    committed.size(), rows, String.format("%.2f", seconds), Math.round(rows / Math.max(seconds, 0.001)));
+            return committed.size();
+        } catch (RuntimeException e) {
             if (em.getTransaction().isActive()) em.getTransaction().rollback();
-            throw new JpaException("Fejl ved oprettelse af film.", e);
-        } finally {
-            em.close();
+            throw e;
+        }
+    }
+
+    // TMDB-id -> Actor for alle skuespillere i batchen; dem der ikke findes i forvejen, oprettes
+    private static Map<Long, Actor> findOrCreateActors(EntityManager em, List<MovieDTO> batch) {
+        Map<Long, String> wanted = new HashMap<>();
+        batch.stream()
+                .filter(dto -> dto.getActors() != null)
+                .flatMap(dto -> dto.getActors().stream())
+                .filter(actor -> actor.getId() != null)
+                .forEach(actor -> wanted.putIfAbsent(actor.getId(), actor.getName()));
+
+        Map<Long, Actor> result = new HashMap<>();
+        inChunks(new ArrayList<>(wanted.keySet()), ids -> em.createQuery("SELECT a FROM Actor a WHERE a.tmdbId IN :ids", Actor.class)
+                .setParameter("ids", ids)
+                .getResultList())
+                .forEach(actor -> result.put(actor.getTmdbId(), actor));
+
+        wanted.forEach((tmdbId, name) -> result.computeIfAbsent(tmdbId, id -> {
+            Actor actor = Actor.builder().tmdbId(id).name(name != null ? name : "Ukendt").build();
+            em.persist(actor);
+            return actor;
+        }));
+        return result;
+    }
+
+    private static Map<Long, Director> findOrCreateDirectors(EntityManager em, List<MovieDTO> batch) {
+        Map<Long, String> wanted = new HashMap<>();
+        batch.stream()
+                .map(MovieDTO::getDirector)
+                .filter(director -> director != null && director.getId() != null)
+                .forEach(director -> wanted.putIfAbsent(director.getId(), director.getName()));
+
+        Map<Long, Director> result = new HashMap<>();
+        inChunks(new ArrayList<>(wanted.keySet()), ids -> em.createQuery("SELECT d FROM Director d WHERE d.tmdbId IN :ids", Director.class)
+                .setParameter("ids", ids)
+                .getResultList())
+                .forEach(director -> result.put(director.getTmdbId(), director));
+
+        wanted.forEach((tmdbId, name) -> result.computeIfAbsent(tmdbId, id -> {
+            Director director = Director.builder().tmdbId(id).name(name).build();
+            em.persist(director);
+            return director;
+        }));
+        return result;
+    }
+
+    // PostgreSQL tillader højst 32767 parametre pr. forespørgsel, så lange IN-lister deles op
+    private static <T, R> List<R> inChunks(List<T> values, Function<List<T>, List<R>> query) {
+        List<R> result = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CHUNK_SIZE) {
+            result.addAll(query.apply(values.subList(from, Math.min(from + IN_CHUNK_SIZE, values.size()))));
         }
+        return result;
     }
 
     public boolean hasMovies() {
@@ -244,30 +618,62 @@ public class MovieDAO {
     }
 
     public List<MovieDTO> getMoviesByTitle(String searchString) {
-        try (EntityManager em = emf.createEntityManager()) {
-            String jpql = "SELECT new app.dtos.MovieDTO(m) FROM Movie m WHERE LOWER(m.originalTitle) LIKE :searchString ORDER BY m.releaseDate ASC";
-            TypedQuery<MovieDTO> query = em.createQuery(jpql, MovieDTO.class);
-            query.setParameter("searchString", "%" + searchString.toLowerCase() + "%");
-            return query.getResultList();
+        try {
+            return replicaRouter.read(emf, em -> {
+                String jpql = "SELECT new app.dtos.MovieDTO(m) FROM Movie m WHERE LOWER(m.originalTitle) LIKE :searchString ORDER BY m.releaseDate ASC";
+                TypedQuery<MovieDTO> query = em.createQuery(jpql, MovieDTO.class);
+                query.setParameter("searchString", "%" + searchString.toLowerCase() + "%");
+                return query.getResultList();
+            });
         } catch (Exception e) {
             throw new JpaException("Fejl ved søgning efter film baseret på titel", e);
         }
     }
 
-    public List<Movie> getMovies(int page, int size) {
+    public List<MovieDTO> getMovies(MovieSort sort, int page, int size) {
+        return getMovies(sort, page, size, null);
+    }
+
+    public List<MovieDTO> getMovies(MovieSort sort, int page, int size, Set<MovieField> fields) {
         if (page < 0 || size <= 0) {
             throw new IllegalArgumentException("Page must be >= 0 and size must be > 0");
         }
-        try (EntityManager em = emf.createEntityManager()) {
-            TypedQuery<Movie> query = em.createQuery("SELECT m FROM Movie m", Movie.class);
-            query.setFirstResult(page * size);
-            query.setMaxResults(size);
-            return query.getResultList();
+        try {
+            return replicaRouter.read(emf, em -> {
+                List<Long> ids = em.createQuery("SELECT m.id FROM Movie m ORDER BY " + sort.getJpqlOrderBy(), Long.class)
+                        .setFirstResult(page * size)
+                        .setMaxResults(size)
+                        .getResultList();
+                return loadByIds(em, ids, fields);
+            });
         } catch (Exception e) {
             throw new JpaException("Fejl under hentning af film med pagination", e);
         }
     }
 
+    // Keyset-pagination: søger direkte til cursoren via det sammensatte indeks i stedet for at tælle OFFSET rækker frem
+    public List<MovieDTO> getMoviesAfter(MovieSort sort, MovieCursor cursor, int size, Set<MovieField> fields) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be > 0");
+        }
+        try {
+            return replicaRouter.read(emf, em -> {
+                String where = cursor != null ? " WHERE " + sort.getJpqlSeek(cursor.key() == null) : "";
+                TypedQuery<Long> query = em.createQuery("SELECT m.id FROM Movie m" + where + " ORDER BY " + sort.getJpqlOrderBy(), Long.class);
+                if (cursor != null) setCursorParameters(query, cursor);
+                List<Long> ids = query.setMaxResults(size).getResultList();
+                return loadByIds(em, ids, fields);
+            });
+        } catch (Exception e) {
+            throw new JpaException("Fejl under hentning af film efter cursor", e);
+        }
+    }
+
+    private static void setCursorParameters(TypedQuery<?> query, MovieCursor cursor) {
+        if (cursor.key() != null) query.setParameter("cursorKey", cursor.keyValue());
+        query.setParameter("cursorId", cursor.id());
+    }
+
     public MovieDTO findByImdbId(Long imdbId) {
         try (EntityManager em = emf.createEntityManager()) {
             TypedQuery<MovieDTO> query = em.createQuery("SELECT new app.dtos.MovieDTO(m) FROM Movie m WHERE m.imdbId = :imdbId", MovieDTO.class);
@@ -0,0 +1,56 @@
+package app.daos;
+
+import app.dtos.PersonSummaryDTO;
+import app.enums.PersonSort;
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Fælles side-forespørgsel for skuespillere og instruktører. Der joines kun i JPQL, så personernes
+// movies-samlinger bliver aldrig hentet; hukommelsen pr. side afhænger af size og TOP_TITLES, ikke af filmografien
+final class PersonSummaryQuery {
+
+    static final int TOP_TITLES = 5;
+
+    private final String entity;        // fx "Actor"
+    private final String moviesPath;    // fx "p.movies"
+    private final String titlesSql;     // native SQL med :ids og :top, giver (person-id, titel) i rækkefølge
+
+    PersonSummaryQuery(String entity, String moviesPath, String titlesSql) {
+        this.entity = entity;
+        this.moviesPath = moviesPath;
+        this.titlesSql = titlesSql;
+    }
+
+    // Én forespørgsel til siden med optælling og én til titlerne for personerne på siden
+    List<PersonSummaryDTO> page(EntityManager em, PersonSort sort, int page, int size) {
+        List<PersonSummaryDTO> people = em.createQuery(
+                        "SELECT new app.dtos.PersonSummaryDTO(p.id, p.name, COUNT(m)) FROM " + entity + " p" +
+                                " LEFT JOIN " + moviesPath + " m GROUP BY p.id, p.name ORDER BY " + sort.getJpqlOrderBy(),
+                        PersonSummaryDTO.class)
+                .setFirstResult((page - 1) * size)
+                .setMaxResults(size)
+                .getResultList();
+        if (people.isEmpty()) {
+            return people;
+        }
+
+        Map<Long, PersonSummaryDTO> byId = people.stream()
+                .collect(Collectors.toMap(PersonSummaryDTO::getId, Function.identity()));
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery(titlesSql)
+                .setParameter("ids", byId.keySet())
+                .setParameter("top", TOP_TITLES)
+                .getResultList();
+        for (Object[] row : rows) {
+            PersonSummaryDTO person = byId.get(((Number) row[0]).longValue());
+            if (person != null) {
+                person.getTopMovieTitles().add((String) row[1]);
+            }
+        }
+        return people;
+    }
+}
@@ -0,0 +1,166 @@
+package app.daos;
+
+import app.config.HibernateConfig;
+import app.utils.ApiProps;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.exception.JDBCConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Sender læsninger der tåler lidt forsinkelse til læsereplikaen, og ellers til primæren. Replikaen bruges kun
+// når den sidste sundhedstjek svarede og forsinkelsen var under DB_REPLICA_MAX_LAG_SECONDS. Efter en ændring
+// i kataloget går læsningerne til primæren, indtil replikaen har afspillet WAL forbi ændringen - ellers kunne
+// indeksene og ResponseCache pege på film replikaen ikke har endnu
+public class ReadReplicaRouter implements MovieChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRouter.class);
+    private static final long CHECK_INTERVAL_MS = 2000;
+    private static ReadReplicaRouter instance;
+
+    // Ikke i recovery betyder en selvstændig database uden replikering, som altid regnes for at være med
+    private static final String CHECK_SQL = "SELECT NOT pg_is_in_recovery() OR pg_last_wal_replay_lsn() >= CAST(:lsn AS pg_lsn), " +
+            "CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final EntityManagerFactory replica;
+    private final AtomicReference<String> awaitedLsn = new AtomicReference<>();   // Primærens WAL-position efter sidste ændring
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private volatile boolean healthy;
+    private volatile double lagSeconds = -1;
+    private volatile long lastCheck;
+    private volatile String lastError;
+
+    private ReadReplicaRouter(EntityManagerFactory replica) {
+        this.replica = replica;
+        if (replica != null) {
+            ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checker.scheduleWithFixedDelay(this::check, 0, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            logger.info("📚 Læsereplika slået til: {}", ApiProps.DB_REPLICA_URL);
+        }
+    }
+
+    public static synchronized ReadReplicaRouter getInstance() {
+        if (instance == null) {
+            instance = new ReadReplicaRouter(HibernateConfig.getReplicaEntityManagerFactory());
+        }
+        return instance;
+    }
+
+    // Kører work mod replikaen hvis den kan bruges, ellers mod emf (primæren). Mister replikaen forbindelsen midt i en
+    // læsning, markeres den nede og læsningen køres igen mod primæren. work må derfor kun læse
+    public <T> T read(EntityManagerFactory emf, Function<EntityManager, T> work) {
+        if (useReplica()) {
+            try (EntityManager em = replica.createEntityManager()) {
+                T result = work.apply(em);
+                replicaReads.increment();
+                return result;
+            } catch (RuntimeException e) {
+                if (!isReplicaFailure(e)) throw e;
+                healthy = false;
+                lastError = e.getMessage();
+                fallbacks.increment();
+                logger.warn("📚 Læsereplikaen svarer ikke - læser fra primæren indtil næste tjek: {}", e.getMessage());
+            }
+        }
+        try (EntityManager em = emf.createEntityManager()) {
+            T result = work.apply(em);
+            primaryReads.increment();
+            return result;
+        }
+    }
+
+    // Der er ingen replika i test, så DAO'er med test-EMF'en læser altid selv
+    private boolean useReplica() {
+        return replica != null && healthy && awaitedLsn.get() == null;
+    }
+
+    @Override
+    public void onMoviesChanged(MovieChange change) {
+        if (replica == null) return;
+        try (EntityManager em = HibernateConfig.getEntityManagerFactory().createEntityManager()) {
+            awaitedLsn.set((String) em.createNativeQuery("SELECT CAST(pg_current_wal_lsn() AS text)").getSingleResult());
+        } catch (Exception e) {
+            // Uden WAL-positionen kan vi ikke se hvornår replikaen er med, så den springes over til næste tjek
+            healthy = false;
+            logger.warn("Kunne ikke læse primærens WAL-position efter en ændring: {}", e.getMessage());
+        }
+    }
+
+    private void check() {
+        String lsn = awaitedLsn.get();
+        try (EntityManager em = replica.createEntityManager()) {
+            Object[] row = (Object[]) em.createNativeQuery(CHECK_SQL)
+                    .setParameter("lsn", lsn != null ? lsn : "0/0")
+                    .getSingleResult();
+            boolean caughtUp = Boolean.TRUE.equals(row[0]);
+            double lag = ((Number) row[1]).doubleValue();
+
+            if (lsn != null && caughtUp) {
+                awaitedLsn.compareAndSet(lsn, null);   // En nyere ændring venter stadig
+            }
+            boolean wasHealthy = healthy;
+            lagSeconds = lag;
+            healthy = lag <= ApiProps.DB_REPLICA_MAX_LAG_SECONDS;
+            lastError = healthy ? null : "Replikaen er " + lag + " sekunder bagud";
+            if (wasHealthy != healthy) {
+                logger.info(healthy ? "📚 Læsereplikaen er med igen ({} s bagud)" : "📚 Læsereplikaen halter {} s bagud - læser fra primæren", lag);
+            }
+        } catch (Exception e) {
+            if (healthy) {
+                logger.warn("📚 Læsereplikaen svarer ikke - læser fra primæren: {}", e.getMessage());
+            }
+            healthy = false;
+            lastError = e.getMessage();
+        } finally {
+            lastCheck = System.currentTimeMillis();
+        }
+    }
+
+    // Forbindelsesfejl, og forespørgsler replikaen afbryder fordi de står i vejen for WAL-afspilningen
+    private static boolean isReplicaFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JDBCConnectionException || cause instanceof SQLTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("08") || sql.getSQLState().equals("40001"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("configured", replica != null);
+        if (replica != null) {
+            stats.put("healthy", healthy);
+            stats.put("lagSeconds", lagSeconds);
+            stats.put("awaitingLsn", awaitedLsn.get());
+            stats.put("lastCheck", lastCheck);
+            stats.put("lastError", lastError);
+        }
+        stats.put("replicaReads", replicaReads.sum());
+        stats.put("primaryReads", primaryReads.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        return stats;
+    }
+}
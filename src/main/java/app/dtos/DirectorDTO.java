@@ -5,6 +5,7 @@ import lombok.*;
 import org.hibernate.Hibernate;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -18,6 +19,14 @@ public class DirectorDTO {
     private Set<Long> movieIds;
     private Set<String> movieTitles;
 
+    // Til JPQL-projektioner; filmene fyldes på bagefter
+    public DirectorDTO(Long id, String name) {
+        this.id = id;
+        this.name = name;
+        this.movieIds = new HashSet<>();
+        this.movieTitles = new HashSet<>();
+    }
+
     public DirectorDTO(Director director) {
         this.id = director.getId();
         this.name = director.getName();
@@ -0,0 +1,73 @@
+package app.dtos;
+
+import app.enums.MovieSort;
+import app.index.IndexedMovie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+// Position i en sorteret filmliste: sorteringsnøglen og id for den sidste film klienten har set.
+// Sendes til klienten som en uigennemsigtig base64-streng
+public record MovieCursor(MovieSort sort, Long id, String key) {
+
+    public static MovieCursor after(MovieSort sort, MovieDTO last) {
+        String key = switch (sort) {
+            case POPULARITY -> String.valueOf(last.getPopularity() != null ? last.getPopularity() : 0.0);
+            case VOTE_AVERAGE -> String.valueOf(last.getRating());
+            case RELEASE_DATE -> last.getReleaseDate();
+            case TITLE -> last.getTitle();
+        };
+        return new MovieCursor(sort, last.getDatabaseId(), key);
+    }
+
+    // Næste cursor er kun relevant hvis siden blev fyldt helt op
+    public static String next(MovieSort sort, List<MovieDTO> page, int pageSize) {
+        if (page.isEmpty() || page.size() < pageSize) {
+            return null;
+        }
+        return after(sort, page.get(page.size() - 1)).encode();
+    }
+
+    public String encode() {
+        String raw = sort.getParam() + "|" + id + (key != null ? "|" + key : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MovieCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Ugyldig cursor: " + token);
+            }
+            MovieSort sort = MovieSort.fromParam(parts[0]);
+            String key = parts.length == 3 ? parts[2] : null;
+            if (sort.hasNumericKey()) {
+                Double.parseDouble(key);
+            }
+            return new MovieCursor(sort, Long.parseLong(parts[1]), key);
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IllegalArgumentException("Ugyldig cursor: " + token, e);
+        }
+    }
+
+    // Nøglen som den type JPQL-parameteren :cursorKey forventer
+    public Object keyValue() {
+        return sort.hasNumericKey() ? Double.valueOf(key) : key;
+    }
+
+    // En "film" med cursorens nøgle, så den kan sammenlignes med sorteringens comparator i filterindekset
+    public IndexedMovie probe() {
+        double number = sort.hasNumericKey() ? Double.parseDouble(key) : 0.0;
+        return new IndexedMovie(id,
+                sort == MovieSort.TITLE ? key : null,
+                sort == MovieSort.RELEASE_DATE ? key : null,
+                null,
+                sort == MovieSort.VOTE_AVERAGE ? number : 0.0,
+                sort == MovieSort.POPULARITY ? number : 0.0,
+                null,
+                List.of(),
+                List.of());
+    }
+}
@@ -0,0 +1,17 @@
+package app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Én side film ved keyset-pagination; nextCursor er null når der ikke er flere.
+// movies er MovieDTO'er eller, med ?fields=, kun de valgte felter
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MoviePageDTO {
+    private List<?> movies;
+    private String nextCursor;
+}
@@ -0,0 +1,27 @@
+package app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Kort oversigt over en skuespiller eller instruktør: antal film og de mest populære titler
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonSummaryDTO {
+    private Long id;
+    private String name;
+    private long movieCount;
+    private List<String> topMovieTitles;
+
+    // Til JPQL-projektioner; titlerne fyldes på bagefter
+    public PersonSummaryDTO(Long id, String name, Long movieCount) {
+        this.id = id;
+        this.name = name;
+        this.movieCount = movieCount;
+        this.topMovieTitles = new ArrayList<>();
+    }
+}
@@ -3,6 +3,8 @@ package app.entities;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Objects;
 import java.util.Set;
@@ -13,13 +15,20 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "actor")
 public class Actor {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "actor_seq")
+    @SequenceGenerator(name = "actor_seq", sequenceName = "actor_seq", allocationSize = 500)
     private Long id;
 
+    // Personens id hos TMDB; bruges til at genkende den samme person på tværs af indlæsninger
+    @Column(name = "tmdb_id", unique = true)
+    private Long tmdbId;
+
     @Column(name = "name", nullable = false)
     private String name;
 
@@ -4,6 +4,8 @@ import app.dtos.DirectorDTO;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Set;
 
@@ -13,13 +15,20 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "director")
 public class Director {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "director_seq")
+    @SequenceGenerator(name = "director_seq", sequenceName = "director_seq", allocationSize = 100)
     private Long id;
 
+    // Personens id hos TMDB; bruges til at genkende den samme person på tværs af indlæsninger
+    @Column(name = "tmdb_id", unique = true)
+    private Long tmdbId;
+
     @Column(name = "name", nullable = true)
     private String name;
 
@@ -3,6 +3,8 @@ package app.entities;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Objects;
 import java.util.Set;
@@ -14,11 +16,18 @@ import java.util.Set;
 @Builder
 @ToString
 @Entity
-@Table(name = "movie")
+// Sammensatte indekser til sorteringerne i MovieSort; id med til sidst gør keyset-pagination til et indeksopslag
+@Table(name = "movie", indexes = {
+        @Index(name = "idx_movie_popularity_id", columnList = "popularity DESC, id DESC"),
+        @Index(name = "idx_movie_release_date_id", columnList = "release_date DESC, id DESC"),
+        @Index(name = "idx_movie_vote_average_id", columnList = "vote_average DESC, id DESC"),
+        @Index(name = "idx_movie_title_id", columnList = "title, id")
+})
 public class Movie {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movie_seq")
+    @SequenceGenerator(name = "movie_seq", sequenceName = "movie_seq", allocationSize = 100)
     private Long id;
 
     @Column(name = "imdb_id", nullable = false, unique = true)
@@ -67,6 +76,7 @@ public class Movie {
             joinColumns = @JoinColumn(name = "movie_id"),
             inverseJoinColumns = @JoinColumn(name = "genre_id")
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @ToString.Exclude
     @JsonIgnore
     private Set<Genre> genres;
@@ -85,6 +95,7 @@ public class Movie {
             joinColumns = @JoinColumn(name = "movie_id"),
             inverseJoinColumns = @JoinColumn(name = "actor_id")
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @ToString.Exclude
     @JsonIgnore
     private Set<Actor> actors;
@@ -0,0 +1,108 @@
+package app.enums;
+
+import app.dtos.MovieDTO;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Felterne i MovieDTO som kan vælges med ?fields=. Afledte felter (fx releaseYear) peger på det felt der
+// skal hentes fra databasen for at beregne dem; MovieDAO henter kun kolonner og joins for de valgte felter
+public enum MovieField {
+    DATABASE_ID("databaseId", null, MovieDTO::getDatabaseId),
+    IMDB_ID("imdbId", null, MovieDTO::getImdbId),
+    TITLE("title", null, MovieDTO::getTitle),
+    DURATION("duration", null, MovieDTO::getDuration),
+    OVERVIEW("overview", null, MovieDTO::getOverview),
+    RELEASE_DATE("releaseDate", null, MovieDTO::getReleaseDate),
+    IS_ADULT("isAdult", null, MovieDTO::getIsAdult),
+    BACKDROP_PATH("backdropPath", null, MovieDTO::getBackdropPath),
+    POSTER_PATH("posterPath", null, MovieDTO::getPosterPath),
+    POPULARITY("popularity", null, MovieDTO::getPopularity),
+    ORIGINAL_LANGUAGE("originalLanguage", null, MovieDTO::getOriginalLanguage),
+    ORIGINAL_TITLE("originalTitle", null, MovieDTO::getOriginalTitle),
+    VOTE_AVERAGE("voteAverage", null, MovieDTO::getVoteAverage),
+    VOTE_COUNT("voteCount", null, MovieDTO::getVoteCount),
+    GENRE_IDS("genreIds", null, MovieDTO::getGenreIds),
+    GENRE_NAMES("genreNames", null, MovieDTO::getGenreNames),
+    ACTORS("actors", null, MovieDTO::getActors),
+    DIRECTOR("director", null, MovieDTO::getDirector),
+
+    RELEASE_YEAR("releaseYear", RELEASE_DATE, MovieDTO::getReleaseYear),
+    RATING("rating", VOTE_AVERAGE, MovieDTO::getRating),
+    DIRECTOR_NAME("directorName", DIRECTOR, MovieDTO::getDirectorName),
+    ACTOR_NAMES("actorNames", ACTORS, MovieDTO::getActorNames);
+
+    private static final Map<String, MovieField> BY_PARAM = new HashMap<>();
+
+    static {
+        for (MovieField field : values()) {
+            BY_PARAM.put(field.param.toLowerCase(Locale.ROOT), field);
+        }
+        BY_PARAM.put("id", DATABASE_ID);
+        BY_PARAM.put("year", RELEASE_YEAR);
+    }
+
+    private final String param;
+    private final MovieField source;
+    private final Function<MovieDTO, Object> getter;
+
+    MovieField(String param, MovieField source, Function<MovieDTO, Object> getter) {
+        this.param = param;
+        this.source = source;
+        this.getter = getter;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    // Det felt der skal hentes fra databasen; sig selv for almindelige felter
+    public MovieField getSource() {
+        return source != null ? source : this;
+    }
+
+    public Object valueOf(MovieDTO movie) {
+        return getter.apply(movie);
+    }
+
+    // Feltet der bærer sorteringsnøglen, så en cursor kan laves selvom klienten ikke har bedt om det
+    public static MovieField forSort(MovieSort sort) {
+        return switch (sort) {
+            case POPULARITY -> POPULARITY;
+            case RELEASE_DATE -> RELEASE_DATE;
+            case VOTE_AVERAGE -> VOTE_AVERAGE;
+            case TITLE -> TITLE;
+        };
+    }
+
+    // "title,posterPath" og gentagne fields-parametre; null når parameteren mangler (alle felter)
+    public static Set<MovieField> parse(List<String> params) {
+        if (params == null || params.isEmpty()) {
+            return null;
+        }
+        Set<MovieField> fields = EnumSet.noneOf(MovieField.class);
+        for (String param : params) {
+            for (String name : param.split(",")) {
+                if (name.isBlank()) continue;
+                MovieField field = BY_PARAM.get(name.trim().toLowerCase(Locale.ROOT));
+                if (field == null) {
+                    throw new IllegalArgumentException("Ukendt felt: " + name.trim());
+                }
+                fields.add(field);
+            }
+        }
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("fields må ikke være tom");
+        }
+        return fields;
+    }
+
+    // Kun de valgte felter, i fast rækkefølge
+    public static Map<String, Object> select(MovieDTO movie, Set<MovieField> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (MovieField field : fields) {
+            result.put(field.param, field.valueOf(movie));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package app.enums;
+
+import app.index.IndexedMovie;
+
+import java.util.Comparator;
+
+// Sorteringsnøgler for filmlister. id bruges altid som sidste nøgle, så rækkefølgen er stabil og kan
+// bruges til keyset-pagination: næste side er alt der kommer efter (nøgle, id) for sidste film.
+// Titler sorteres efter Unicode-kodepunkt (ucs_basic) i både databasen og MovieIndex, så de to filtermotorer
+// giver samme rækkefølge uanset databasens sprogindstilling
+public enum MovieSort {
+    POPULARITY("popularity",
+            "m.popularity DESC, m.id DESC",
+            "(m.popularity < :cursorKey OR (m.popularity = :cursorKey AND m.id < :cursorId))",
+            null,
+            Comparator.comparingDouble(IndexedMovie::popularity).reversed()
+                    .thenComparing(IndexedMovie::id, Comparator.reverseOrder())),
+    RELEASE_DATE("releaseDate",
+            "m.releaseDate DESC NULLS LAST, m.id DESC",
+            "(m.releaseDate < :cursorKey OR (m.releaseDate = :cursorKey AND m.id < :cursorId) OR m.releaseDate IS NULL)",
+            "(m.releaseDate IS NULL AND m.id < :cursorId)",
+            Comparator.comparing(IndexedMovie::releaseDate, Comparator.nullsFirst(Comparator.<String>naturalOrder())).reversed()
+                    .thenComparing(IndexedMovie::id, Comparator.reverseOrder())),
+    VOTE_AVERAGE("voteAverage",
+            "m.voteAverage DESC, m.id DESC",
+            "(m.voteAverage < :cursorKey OR (m.voteAverage = :cursorKey AND m.id < :cursorId))",
+            null,
+            Comparator.comparingDouble(IndexedMovie::voteAverage).reversed()
+                    .thenComparing(IndexedMovie::id, Comparator.reverseOrder())),
+    TITLE("title",
+            "collate(m.title as ucs_basic) ASC, m.id ASC",
+            "(collate(m.title as ucs_basic) > :cursorKey OR (collate(m.title as ucs_basic) = :cursorKey AND m.id > :cursorId))",
+            null,
+            Comparator.comparing(IndexedMovie::title, Comparator.nullsLast(MovieSort::compareCodePoints))
+                    .thenComparing(IndexedMovie::id));
+
+    private final String param;
+    private final String jpqlOrderBy;
+    private final String jpqlSeek;
+    private final String jpqlSeekAfterNull;   // kun for nøgler der kan være null
+    private final Comparator<IndexedMovie> comparator;
+
+    MovieSort(String param, String jpqlOrderBy, String jpqlSeek, String jpqlSeekAfterNull, Comparator<IndexedMovie> comparator) {
+        this.param = param;
+        this.jpqlOrderBy = jpqlOrderBy;
+        this.jpqlSeek = jpqlSeek;
+        this.jpqlSeekAfterNull = jpqlSeekAfterNull;
+        this.comparator = comparator;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public String getJpqlOrderBy() {
+        return jpqlOrderBy;
+    }
+
+    // Betingelse for "kommer efter cursoren" med parametrene :cursorKey og :cursorId
+    public String getJpqlSeek(boolean nullKey) {
+        return nullKey ? jpqlSeekAfterNull : jpqlSeek;
+    }
+
+    public boolean hasNumericKey() {
+        return this == POPULARITY || this == VOTE_AVERAGE;
+    }
+
+    public Comparator<IndexedMovie> getComparator() {
+        return comparator;
+    }
+
+    // Samme rækkefølge som ucs_basic. String.compareTo sammenligner UTF-16-enheder og afviger for tegn uden for BMP
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    public static MovieSort fromParam(String param) {
+        if (param == null || param.isBlank()) {
+            return POPULARITY;
+        }
+        for (MovieSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Ukendt sortering: " + param);
+    }
+}
@@ -0,0 +1,35 @@
+package app.enums;
+
+// Sorteringer for skuespiller- og instruktørlister. p er personen og COUNT(m) antallet af film
+public enum PersonSort {
+    NAME("name", "p.name ASC, p.id ASC"),
+    MOVIE_COUNT("movieCount", "COUNT(m) DESC, p.name ASC, p.id ASC");
+
+    private final String param;
+    private final String jpqlOrderBy;
+
+    PersonSort(String param, String jpqlOrderBy) {
+        this.param = param;
+        this.jpqlOrderBy = jpqlOrderBy;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public String getJpqlOrderBy() {
+        return jpqlOrderBy;
+    }
+
+    public static PersonSort fromParam(String param) {
+        if (param == null || param.isBlank()) {
+            return NAME;
+        }
+        for (PersonSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Ukendt sortering: " + param);
+    }
+}
@@ -0,0 +1,35 @@
+package app.enums;
+
+// Hvad autocomplete foreslår, og hvordan vægten findes: filmens popularitet, eller for personer
+// summen af populariteten af deres film. Navnene er de samme som filtrene i /movies/filtermovies
+public enum SuggestionType {
+    TITLE("title", "SELECT m.title, MAX(m.popularity) FROM Movie m GROUP BY m.title"),
+    ACTOR("actor", "SELECT a.name, SUM(m.popularity) FROM Movie m JOIN m.actors a GROUP BY a.name"),
+    DIRECTOR("director", "SELECT d.name, SUM(m.popularity) FROM Movie m JOIN m.director d GROUP BY d.name");
+
+    private final String param;
+    private final String jpql;
+
+    SuggestionType(String param, String jpql) {
+        this.param = param;
+        this.jpql = jpql;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    // Giver rækker med (navn, vægt)
+    public String getJpql() {
+        return jpql;
+    }
+
+    public static SuggestionType fromParam(String param) {
+        for (SuggestionType type : values()) {
+            if (type.param.equalsIgnoreCase(param)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Ukendt type: " + param);
+    }
+}
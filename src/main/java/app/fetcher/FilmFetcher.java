@@ -3,20 +3,30 @@ package app.fetcher;
 import app.dtos.*;
 import app.entities.Genre;
 import app.daos.GenreDAO;
+import app.config.AppConfig;
 import app.exceptions.JpaException;
+import app.utils.ApiProps;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonEOFException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,214 +34,355 @@ import java.util.stream.Collectors;
 
 public class FilmFetcher {
     private static final Logger logger = LoggerFactory.getLogger(FilmFetcher.class);
-    private static final String API_KEY = System.getenv("API_KEY");
     private static final LocalDate today = LocalDate.now();
     private static final String BASE_API_URL = "https://api.themoviedb.org/3/discover/movie";
     private static final LocalDate fiftyfiveYearsAgo = today.minusYears(55);
     private static final LocalDate fiveYearsAgo = today.minusYears(5);
     private static final LocalDate oneYearAgo = today.minusYears(1);
 
-    private static final String BASE_API_URL_DANISH_MOVIES_RELEASED_LAST_5_YEARS = BASE_API_URL
-            + "?api_key=" + API_KEY
-            + "&with_origin_country=DK"
-            + "&primary_release_date.gte=" + fiveYearsAgo
-            + "&primary_release_date.lte=" + today
-            + "&sort_by=popularity.desc"
-            + "&page=";
+    private static final int QUEUE_CAPACITY = 2000;
+    private static final int DISCOVERY_THREADS = 4;
+    private static final int MAX_DISCOVER_PAGES = 500;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(2);
+    private static final MovieDTO END_OF_STREAM = new MovieDTO();   // markerer at et trin ikke sender mere
 
-    private final HttpClient client = HttpClient.newHttpClient();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final RateLimiter rateLimiter = new RateLimiter(ApiProps.TMDB_REQUESTS_PER_SECOND);
+    private final MovieDetailsParser detailsParser = new MovieDetailsParser();
     private final ObjectMapper objectMapper = new ObjectMapper();
     @Getter
-    private List<MovieDTO> movieList = new ArrayList<>();
-    @Getter
     private Map<Integer, String> genreMap = new HashMap<>();
     private final GenreDAO genreDAO;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(15);
+    @Getter
+    private final IngestJournal journal;
+    private final AtomicInteger failedFetches = new AtomicInteger();    // forbigående fejl - hentes igen næste gang
+    private final AtomicInteger skippedFetches = new AtomicInteger();   // permanente fejl - opgivet i journalen
 
-    public FilmFetcher(GenreDAO genreDAO) {
+    public FilmFetcher(GenreDAO genreDAO, IngestJournal journal) {
         this.genreDAO = genreDAO;
+        this.journal = journal;
         initializeGenreMap();
     }
 
-    public List<MovieDTO> fetchMoviesFromLastTenYears() throws IOException, InterruptedException {
-        List<MovieDTO> allMovies = new ArrayList<>();
+    // Pipeline i tre trin med begrænsede køer imellem: sider findes via discover, detaljer og credits
+    // hentes for hver film, og til sidst samles DTO'erne og sendes videre til sink. Alle TMDB-kald går
+    // gennem samme RateLimiter. Returnerer antallet af film der blev sendt videre
+    public int fetchMoviesFromLastTenYears(MovieSink sink) throws IOException, InterruptedException {
         int currentYear = LocalDate.now().getYear();
         int startYear = currentYear - 55;
+        int detailThreads = ApiProps.TMDB_FETCH_THREADS;
+        failedFetches.set(0);
+        skippedFetches.set(0);
+
+        BlockingQueue<MovieDTO> discovered = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<MovieDTO> detailed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Set<Long> seenIds = ConcurrentHashMap.newKeySet();
+        seenIds.addAll(journal.getSkippedIds());
+        AtomicInteger pendingPages = new AtomicInteger();
+        AtomicInteger discoveredCount = new AtomicInteger();
+
+        // Semaforerne bestemmer hvor mange kald der er i gang; executorerne er bare tråde at køre dem på
+        Semaphore discoveryPermits = new Semaphore(DISCOVERY_THREADS);
+        Semaphore detailPermits = new Semaphore(detailThreads);
+        ExecutorService discoveryPool = newExecutor(DISCOVERY_THREADS);
+        ExecutorService detailPool = newExecutor(detailThreads + 1);   // + 1 til fordeleren
+        logger.info("🧵 Henter film med {} tråde", ApiProps.VIRTUAL_THREADS ? "virtuelle" : "platform-");
+        int emitted = 0;
 
-        for (int year = startYear; year <= currentYear; year++) {
-            LocalDate fromDate = LocalDate.of(year, 1, 1);
-            LocalDate toDate = LocalDate.of(year, 12, 31);
-
-            logger.info("\n🔽 Henter film udgivet fra {} til {} ...", fromDate, toDate);
-            System.out.println("\n🔽 Henter film udgivet fra " + fromDate + " til " + toDate + " ...");
-
-            String baseUrl = BASE_API_URL
-                    + "?api_key=" + API_KEY
-                    + "&without_genres=99"
-                    + "&with_runtime.gte=80"
-                    + "&vote_average.gte=3"
-                    + "&vote_count.gte=20"
-                    + "&with_poster=true"
-                    + "&primary_release_date.gte=" + fromDate
-                    + "&primary_release_date.lte=" + toDate
-                    + "&with_release_type=3%7C6"
-                    + "&page=";
-
-            int page = 1;
-            boolean hasMorePages = true;
-            List<Future<List<MovieDTO>>> futures = new ArrayList<>();
-
-            while (hasMorePages) {
-                int currentPage = page;
-                String paginatedUrl = baseUrl + currentPage;
-
-                Future<List<MovieDTO>> future = executorService.submit(() -> {
-                    String jsonResponse = fetchApiResponseWithRetry(paginatedUrl);
-                    JsonNode rootNode = objectMapper.readTree(jsonResponse);
-                    JsonNode resultsNode = rootNode.path("results");
-                    return resultsNode.isEmpty() ? Collections.emptyList() : extractMovies(resultsNode);
-                });
-
-                futures.add(future);
-                page++;
-                if (page > 500) hasMorePages = false;
+        try {
+            // Film med detaljer fra en afbrudt kørsel går direkte til sink; seenIds sørger for at de ikke hentes igen
+            emitted = journal.replayDetails(movie -> {
+                seenIds.add(movie.getImdbId());
+                movie.setGenreNames(getGenreNames(movie.getGenreIds()));
+                sink.accept(movie);
+            });
+
+            // Trin 1: side 1 for hvert år fortæller hvor mange sider året har; resten lægges i kø derefter.
+            // Løkken holder selv en tæller, så køen ikke lukkes før alle år er sendt afsted
+            pendingPages.incrementAndGet();
+            for (int year = startYear; year <= currentYear; year++) {
+                submitDiscoverPage(discoveryPool, discoveryPermits, year, 1, discovered, seenIds, pendingPages, discoveredCount);
             }
+            pageDone(discovered, pendingPages);
 
-            for (Future<List<MovieDTO>> future : futures) {
-                try {
-                    allMovies.addAll(future.get());
-                } catch (ExecutionException e) {
-                    logger.error("❌ Fejl ved udførelse af filmhentning", e);
+            // Trin 2: detaljer og credits, én opgave pr. film
+            detailPool.submit(() -> {
+                dispatchDetails(detailPool, detailPermits, detailThreads, discovered, detailed);
+                return null;
+            });
+
+            // Trin 3: samling af DTO'erne i denne tråd, indtil detaljetrinnet melder sig færdigt
+            while (true) {
+                MovieDTO movie = detailed.take();
+                if (movie == END_OF_STREAM) break;
+                movie.setGenreNames(getGenreNames(movie.getGenreIds()));
+                sink.accept(movie);
+
+                if (++emitted % 1000 == 0) {
+                    String time = LocalTime.now().withNano(0).toString();
+                    logger.info("🔍 [{}] {} film med detaljer ({} fundet indtil nu, {} kald/sek)",
+                            time, emitted, discoveredCount.get(), String.format("%.1f", rateLimiter.getRate()));
+                    System.out.println("🔍 [" + time + "] " + emitted + " film med detaljer (" + discoveredCount.get() + " fundet indtil nu)");
                 }
             }
+        } finally {
+            discoveryPool.shutdownNow();
+            detailPool.shutdownNow();
+            journal.close();
+        }
 
-            logger.info("✅ Færdig med at hente film fra {} ({} film i alt indtil nu)", year, allMovies.size());
-            System.out.println("✅ Færdig med at hente film fra " + year + " (" + allMovies.size() + " film i alt indtil nu)");
+        logger.info("🎬 Hentede i alt {} film fra perioden {}–{}", emitted, startYear, currentYear);
+        if (failedFetches.get() > 0) {
+            logger.warn("⚠️ {} sider eller film kunne ikke hentes fra TMDB", failedFetches.get());
         }
+        if (skippedFetches.get() > 0) {
+            logger.warn("⚠️ {} sider eller film kan TMDB ikke levere og er sprunget over", skippedFetches.get());
+        }
+        System.out.println("\n🎬 Hentede i alt " + emitted + " film fra perioden " + startYear + "–" + currentYear + "\n");
+        return emitted;
+    }
 
-        logger.info("⏳ Venter 20 sekunder før vi henter filmdetaljer...");
-        System.out.println("⏳ Venter 20 sekunder før vi henter filmdetaljer...");
-        Thread.sleep(20000);
+    // Antal sider og film fra sidste kørsel der fejlede forbigående og derfor mangler i journalen
+    public int getFailedFetches() {
+        return failedFetches.get();
+    }
 
-        List<Future<Void>> detailFutures = new ArrayList<>();
-        AtomicInteger counter = new AtomicInteger();
+    // Antal sider og film fra sidste kørsel der blev opgivet, fordi TMDB aldrig vil kunne levere dem
+    public int getSkippedFetches() {
+        return skippedFetches.get();
+    }
 
-        for (MovieDTO movie : allMovies) {
-            detailFutures.add(executorService.submit(() -> {
-                int index = counter.incrementAndGet();
-                try {
-                    Thread.sleep(100);
-                    MovieDTO detailedMovie = fetchMovieWithDetails(movie.getImdbId());
-                    movie.setActors(detailedMovie.getActors());
-                    movie.setDirector(detailedMovie.getDirector());
-                    movie.setDuration(detailedMovie.getDuration());
-
-                    if (index % 1000 == 0) {
-                        String time = LocalTime.now().withNano(0).toString();
-                        logger.info("🔍 [{}] Henter detaljer for film {} / {}", time, index, allMovies.size());
-                        System.out.println("🔍 [" + time + "] Henter detaljer for film " + index + " / " + allMovies.size());
-                        logger.info("⏸️ Pause 5 sekunder efter {} detaljer...", index);
-                        System.out.println("⏸️ Pause 5 sekunder efter " + index + " detaljer...");
-                        Thread.sleep(5000);
+    private void submitDiscoverPage(ExecutorService pool, Semaphore permits, int year, int page, BlockingQueue<MovieDTO> discovered,
+                                    Set<Long> seenIds, AtomicInteger pendingPages, AtomicInteger discoveredCount) {
+        pendingPages.incrementAndGet();
+        pool.submit(() -> {
+            boolean acquired = false;
+            try {
+                IngestJournal.Entry entry = journal.takePage(year, page).orElse(null);
+                if (entry == null) {
+                    permits.acquire();
+                    acquired = true;
+                    JsonNode rootNode = objectMapper.readTree(fetchApiResponseWithRetry(discoverUrl(year) + page));
+                    // TMDB udleverer højst 500 sider, uanset hvad total_pages siger
+                    int totalPages = Math.min(rootNode.path("total_pages").asInt(1), MAX_DISCOVER_PAGES);
+                    List<MovieDTO> movies = extractMovies(rootNode.path("results"));
+                    journal.appendPage(year, page, totalPages, movies);
+                    entry = new IngestJournal.Entry("page", year, page, totalPages, movies, null, null);
+                }
+                if (page == 1) {
+                    logger.info("🔽 {} har {} sider med film", year, entry.totalPages());
+                    for (int next = 2; next <= entry.totalPages(); next++) {
+                        submitDiscoverPage(pool, permits, year, next, discovered, seenIds, pendingPages, discoveredCount);
                     }
-                    Thread.sleep(20);
-                } catch (IOException | InterruptedException e) {
-                    logger.warn("Kunne ikke hente detaljer for film-ID: {}", movie.getImdbId(), e);
                 }
-                return null;
-            }));
+                for (MovieDTO movie : entry.movies()) {
+                    // En film kan dukke op på to sider hvis popularitetsrækkefølgen ændrer sig undervejs
+                    if (seenIds.add(movie.getImdbId())) {
+                        discovered.put(movie);
+                        discoveredCount.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                if (isPermanent(e) && skipped(() -> journal.appendSkippedPage(year, page, e.toString()))) {
+                    logger.error("❌ Side {} for {} kan ikke hentes og springes over", page, year, e);
+                } else {
+                    failedFetches.incrementAndGet();
+                    logger.error("❌ Fejl ved hentning af side {} for {}", page, year, e);
+                }
+            } finally {
+                if (acquired) permits.release();
+                pageDone(discovered, pendingPages);
+            }
+        });
+    }
+
+    // Sidste side der bliver færdig, lukker køen til detaljetrinnet
+    private static void pageDone(BlockingQueue<MovieDTO> discovered, AtomicInteger pendingPages) {
+        if (pendingPages.decrementAndGet() == 0) {
+            putQuietly(discovered, END_OF_STREAM);
         }
+    }
 
-        for (Future<Void> future : detailFutures) {
-            try {
-                future.get();
-            } catch (ExecutionException e) {
-                logger.error("Fejl ved udførelse af filmhentning af detaljer", e);
+    // Fordeler film til detaljehentning. Semaforen giver modtryk: der startes ikke flere hentninger
+    // end der er tilladelser til, og til sidst ventes på at alle tilladelser er kommet tilbage
+    private void dispatchDetails(ExecutorService pool, Semaphore permits, int maxInFlight,
+                                 BlockingQueue<MovieDTO> discovered, BlockingQueue<MovieDTO> detailed) throws InterruptedException {
+        try {
+            while (true) {
+                MovieDTO movie = discovered.take();
+                if (movie == END_OF_STREAM) break;
+                permits.acquire();
+                pool.submit(() -> {
+                    try {
+                        MovieDTO detailedMovie = fetchMovieWithDetails(movie.getImdbId());
+                        movie.setActors(detailedMovie.getActors());
+                        movie.setDirector(detailedMovie.getDirector());
+                        movie.setDuration(detailedMovie.getDuration());
+                        journal.appendDetails(movie);
+                        detailed.put(movie);
+                    } catch (IOException | RuntimeException e) {
+                        if (isPermanent(e) && skipped(() -> journal.appendSkippedMovie(movie, e.toString()))) {
+                            logger.warn("Film-ID {} kan ikke hentes og springes over", movie.getImdbId(), e);
+                        } else {
+                            failedFetches.incrementAndGet();
+                            logger.warn("Kunne ikke hente detaljer for film-ID: {}", movie.getImdbId(), e);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        permits.release();
+                    }
+                });
             }
+            permits.acquire(maxInFlight);
+        } finally {
+            putQuietly(detailed, END_OF_STREAM);
         }
+    }
 
-        executorService.shutdown();
-        logger.info("🎬 Hentede i alt {} film fra perioden {}–{}", allMovies.size(), startYear, currentYear);
-        System.out.println("\n🎬 Hentede i alt " + allMovies.size() + " film fra perioden " + startYear + "–" + currentYear + "\n");
-        return allMovies;
+    // Permanente fejl giver samme svar hver gang: 4xx fra TMDB og svar der ikke kan læses. Afbrudte svar,
+    // netværksfejl og 5xx/429 efter alle forsøg kan gå over og tæller som forbigående
+    private static boolean isPermanent(Exception e) {
+        return e instanceof PermanentFetchException
+                || e instanceof RuntimeException
+                || (e instanceof JsonProcessingException && !(e instanceof JsonEOFException));
     }
 
-    private String fetchApiResponseWithRetry(String apiUrl) throws IOException, InterruptedException {
+    // Skriver en opgivet side eller film i journalen; lykkes det ikke, tæller fejlen som forbigående
+    private boolean skipped(JournalWrite write) {
         try {
-            return fetchApiResponse(apiUrl);
+            write.run();
+            skippedFetches.incrementAndGet();
+            return true;
         } catch (IOException e) {
-            logger.warn("Første forsøg fejlede, forsøger igen: {}", apiUrl);
-            Thread.sleep(500);
-            return fetchApiResponse(apiUrl);
+            logger.warn("📓 Kunne ikke skrive til journalen: {}", e.toString());
+            return false;
         }
     }
 
-    private String fetchApiResponse(String apiUrl) throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .GET()
-                .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() == 200) {
-            return response.body();
-        } else {
-            throw new IOException("Kunne ikke hente API-svaret. Statuskode: " + response.statusCode());
+    @FunctionalInterface
+    private interface JournalWrite {
+        void run() throws IOException;
+    }
+
+    // TMDB har svaret, og et nyt forsøg vil give samme svar
+    static class PermanentFetchException extends IOException {
+        PermanentFetchException(String message) {
+            super(message);
         }
     }
 
-    private MovieDTO fetchMovieWithDetails(Long movieId) throws IOException, InterruptedException {
-        String movieUrl = "https://api.themoviedb.org/3/movie/" + movieId + "?api_key=" + API_KEY;
-        String creditsUrl = "https://api.themoviedb.org/3/movie/" + movieId + "/credits?api_key=" + API_KEY;
-
-        String movieJsonResponse = fetchApiResponseWithRetry(movieUrl);
-        String creditsJsonResponse = fetchApiResponseWithRetry(creditsUrl);
-
-        JsonNode movieJson = objectMapper.readTree(movieJsonResponse);
-        JsonNode creditsJson = objectMapper.readTree(creditsJsonResponse);
-
-        MovieDTO movieDTO = MovieDTO.builder()
-                .imdbId(movieJson.get("id").asLong())
-                .title(movieJson.has("title") ? movieJson.get("title").asText() : "Ukendt titel")
-                .duration(movieJson.has("runtime") ? movieJson.get("runtime").asInt() : 0)
-                .overview(movieJson.has("overview") ? movieJson.get("overview").asText() : "Ingen beskrivelse")
-                .releaseDate(movieJson.has("release_date") ? movieJson.get("release_date").asText() : "Ukendt dato")
-                .isAdult(movieJson.has("adult") && movieJson.get("adult").asBoolean())
-                .backdropPath(movieJson.has("backdrop_path") ? movieJson.get("backdrop_path").asText() : null)
-                .posterPath(movieJson.has("poster_path") ? movieJson.get("poster_path").asText() : null)
-                .popularity(movieJson.has("popularity") ? movieJson.get("popularity").asDouble() : 0.0)
-                .originalLanguage(movieJson.has("original_language") ? movieJson.get("original_language").asText() : "Ukendt")
-                .originalTitle(movieJson.has("original_title") ? movieJson.get("original_title").asText() : "Ukendt")
-                .voteAverage(movieJson.has("vote_average") ? movieJson.get("vote_average").asDouble() : 0.0)
-                .voteCount(movieJson.has("vote_count") ? movieJson.get("vote_count").asInt() : 0)
-                .genreIds(parseGenreIds(movieJson.path("genres")))
-                .build();
-
-        addActorsAndDirector(movieDTO, creditsJson);
-        return movieDTO;
+    // En virtuel tråd pr. opgave eller en fast pulje platformtråde, alt efter THREAD_MODE
+    private static ExecutorService newExecutor(int platformThreads) {
+        return ApiProps.VIRTUAL_THREADS
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+    }
+
+    private static void putQuietly(BlockingQueue<MovieDTO> queue, MovieDTO movie) {
+        try {
+            queue.put(movie);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Slås op ved hvert kald, så en ny nøgle virker efter genindlæsning af konfigurationen
+    private static String apiKey() {
+        return AppConfig.get().getString("API_KEY", null);
     }
 
-    private void addActorsAndDirector(MovieDTO movieDTO, JsonNode creditsJson) {
-        DirectorDTO directorDTO = null;
-        for (JsonNode crewMember : creditsJson.get("crew")) {
-            if ("Director".equals(crewMember.get("job").asText())) {
-                directorDTO = DirectorDTO.builder()
-                        .id(crewMember.get("id").asLong())
-                        .name(crewMember.get("name").asText())
-                        .build();
-                break;
+    private static String discoverUrl(int year) {
+        return BASE_API_URL
+                + "?api_key=" + apiKey()
+                + "&without_genres=99"
+                + "&with_runtime.gte=80"
+                + "&vote_average.gte=3"
+                + "&vote_count.gte=20"
+                + "&with_poster=true"
+                + "&primary_release_date.gte=" + LocalDate.of(year, 1, 1)
+                + "&primary_release_date.lte=" + LocalDate.of(year, 12, 31)
+                + "&with_release_type=3%7C6"
+                + "&page=";
+    }
+
+    private String fetchApiResponseWithRetry(String apiUrl) throws IOException, InterruptedException {
+        return fetchWithRetry(apiUrl, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> T fetchWithRetry(String apiUrl, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            HttpResponse<T> response;
+            try {
+                response = client.send(HttpRequest.newBuilder()
+                        .uri(URI.create(apiUrl))
+                        .timeout(Duration.ofSeconds(30))
+                        .GET()
+                        .build(), bodyHandler);
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS) throw e;
+                logger.warn("Forsøg {} fejlede, prøver igen: {}", attempt, e.getMessage());
+                Thread.sleep(backoffMillis(attempt));
+                continue;
+            }
+
+            int status = response.statusCode();
+            if (status == 200) {
+                rateLimiter.onSuccess();
+                return response.body();
+            }
+            if (response.body() instanceof Closeable body) {
+                body.close();   // Streamede svar skal lukkes, ellers holdes forbindelsen
+            }
+            if (status == 429) {
+                rateLimiter.onThrottled(retryAfter(response));
+            } else if (status == 401 || status == 403) {
+                // Forkert eller spærret API-nøgle rammer alle kald og kan rettes - det er ikke filmens skyld
+                throw new IOException("TMDB afviste API-nøglen. Statuskode: " + status);
+            } else if (status < 500) {
+                throw new PermanentFetchException("Kunne ikke hente API-svaret. Statuskode: " + status);
+            } else {
+                Thread.sleep(backoffMillis(attempt));
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                throw new IOException("Kunne ikke hente API-svaret efter " + attempt + " forsøg. Statuskode: " + status);
             }
         }
-        movieDTO.setDirector(directorDTO);
+    }
 
-        Set<ActorDTO> actorDTOSet = new HashSet<>();
-        for (JsonNode actor : creditsJson.get("cast")) {
-            ActorDTO actorDTO = ActorDTO.builder()
-                    .id(actor.get("id").asLong())
-                    .name(actor.get("name").asText())
-                    .build();
-            actorDTOSet.add(actorDTO);
+    // Retry-After er enten et antal sekunder eller en HTTP-dato
+    private static Duration retryAfter(HttpResponse<?> response) {
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        if (header.isPresent()) {
+            String value = header.get().trim();
+            try {
+                return Duration.ofSeconds(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                try {
+                    Duration until = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+                    return until.isNegative() ? Duration.ZERO : until;
+                } catch (DateTimeParseException ignored) {
+                    // Ugyldig header - brug standardpausen
+                }
+            }
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+
+    private static long backoffMillis(int attempt) {
+        return 500L << Math.min(attempt - 1, 5);
+    }
+
+    // Ét kald pr. film: credits kommer med i samme svar via append_to_response og læses som en strøm
+    private MovieDTO fetchMovieWithDetails(Long movieId) throws IOException, InterruptedException {
+        String movieUrl = "https://api.themoviedb.org/3/movie/" + movieId + "?api_key=" + apiKey() + "&append_to_response=credits";
+        try (InputStream body = fetchWithRetry(movieUrl, HttpResponse.BodyHandlers.ofInputStream())) {
+            return detailsParser.parse(body);
         }
-        movieDTO.setActors(actorDTOSet);
     }
 
     private List<MovieDTO> extractMovies(JsonNode resultsNode) {
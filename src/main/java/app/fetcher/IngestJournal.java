@@ -0,0 +1,218 @@
+package app.fetcher;
+
+import app.dtos.MovieDTO;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Append-only journal over TMDB-indlæsningen: hver hentet discover-side og hver film med detaljer skrives som
+// én NDJSON-linje i gzip-komprimerede segmenter. Det der kan læses tilbage fra journalen, er checkpointet -
+// efter et nedbrud fortsætter indlæsningen hvor den slap, og alt i journalen afspilles uden nye TMDB-kald.
+// Kun siderne holdes i hukommelsen, og kun med de film der mangler detaljer; filmene med detaljer streames
+// fra disken igen med replayDetails. Sider og film som TMDB aldrig kan levere (fx 404 eller ugyldig JSON),
+// skrives som "skipped", så de ikke holder journalen åben og ikke forsøges igen ved hver opstart
+public class IngestJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestJournal.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    private static final String COMPLETED_MARKER = "COMPLETED";
+    private static final int RECORDS_PER_SEGMENT = 500;   // små segmenter begrænser hvad et nedbrud kan koste
+
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final Map<String, Entry> pages = new ConcurrentHashMap<>();     // "år/side" -> side, uden færdige film
+    private final Set<Long> skippedIds = new HashSet<>();                   // film der er opgivet for altid
+    private final boolean started;
+    private final int finishedCount;
+
+    private int nextSegment;
+    private Writer writer;
+    private int recordsInSegment;
+
+    // Én linje i journalen: en discover-side, en film med detaljer eller en side/film der er sprunget over
+    record Entry(String type, Integer year, Integer page, Integer totalPages, List<MovieDTO> movies, MovieDTO movie,
+                 String reason) {
+    }
+
+    private IngestJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        // Første gennemløb: kun sider og id'erne på de færdige film
+        List<Path> segments = listSegments();
+        Set<Long> finished = new HashSet<>();
+        for (Path segment : segments) {
+            readSegment(segment, entry -> {
+                if ("page".equals(entry.type())) {
+                    pages.put(entry.year() + "/" + entry.page(), entry);
+                } else if ("details".equals(entry.type()) && entry.movie() != null) {
+                    finished.add(entry.movie().getImdbId());
+                } else if ("skipped".equals(entry.type()) && entry.movie() != null) {
+                    skippedIds.add(entry.movie().getImdbId());
+                } else if ("skipped".equals(entry.type()) && entry.year() != null) {
+                    // En opgivet side afspilles som en tom side, så den ikke hentes igen
+                    pages.putIfAbsent(entry.year() + "/" + entry.page(),
+                            new Entry("page", entry.year(), entry.page(), 1, List.of(), null, null));
+                }
+            });
+        }
+        // Film der allerede har detaljer, afspilles af replayDetails og skal ikke hentes igen fra siderne - og det
+        // skal opgivne film heller ikke
+        pages.replaceAll((key, page) -> page.movies() == null ? page : new Entry(page.type(), page.year(), page.page(),
+                page.totalPages(), page.movies().stream()
+                        .filter(movie -> !finished.contains(movie.getImdbId()) && !skippedIds.contains(movie.getImdbId()))
+                        .toList(), null, null));
+        this.finishedCount = finished.size();
+        this.started = !segments.isEmpty();
+        this.nextSegment = segments.isEmpty() ? 1 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+
+        if (started) {
+            logger.info("📓 Journal i {}: {} sider, {} film med detaljer og {} opgivne film{}", directory, pages.size(),
+                    finishedCount, skippedIds.size(), isCompleted() ? " (afsluttet)" : " - indlæsningen fortsætter herfra");
+        }
+    }
+
+    public static IngestJournal open(Path directory) throws IOException {
+        return new IngestJournal(directory);
+    }
+
+    // Journalen har data fra en tidligere kørsel
+    public boolean isStarted() {
+        return started;
+    }
+
+    // Alt i journalen er gemt i databasen
+    public boolean isCompleted() {
+        return Files.exists(directory.resolve(COMPLETED_MARKER));
+    }
+
+    // Film der er opgivet i en tidligere kørsel; de skal ikke hentes igen, selv om de dukker op på en ny side
+    public Set<Long> getSkippedIds() {
+        return Collections.unmodifiableSet(skippedIds);
+    }
+
+    // Hver side afspilles én gang og glemmes derefter
+    public Optional<Entry> takePage(int year, int page) {
+        return Optional.ofNullable(pages.remove(year + "/" + page));
+    }
+
+    // Andet gennemløb: sender hver film med detaljer fra journalen videre til sink én ad gangen, direkte fra
+    // segmenterne. Skal kaldes før der skrives nyt til journalen. Returnerer antal afspillede film
+    public int replayDetails(MovieSink sink) throws IOException, InterruptedException {
+        if (finishedCount == 0) {
+            return 0;
+        }
+        Set<Long> replayed = new HashSet<>();
+        List<MovieDTO> segmentMovies = new ArrayList<>(RECORDS_PER_SEGMENT);
+        for (Path segment : listSegments()) {
+            // Et segment har højst RECORDS_PER_SEGMENT linjer, så ét segment ad gangen i hukommelsen er nok
+            readSegment(segment, entry -> {
+                if ("details".equals(entry.type()) && entry.movie() != null && replayed.add(entry.movie().getImdbId())) {
+                    segmentMovies.add(entry.movie());
+                }
+            });
+            for (MovieDTO movie : segmentMovies) {
+                sink.accept(movie);
+            }
+            segmentMovies.clear();
+        }
+        logger.info("📓 Afspillede {} film med detaljer fra journalen", replayed.size());
+        return replayed.size();
+    }
+
+    public void appendPage(int year, int page, int totalPages, List<MovieDTO> movies) throws IOException {
+        append(new Entry("page", year, page, totalPages, movies, null, null));
+    }
+
+    public void appendDetails(MovieDTO movie) throws IOException {
+        append(new Entry("details", null, null, null, null, movie, null));
+    }
+
+    // TMDB kan aldrig levere siden - den tæller som hentet, bare uden film
+    public void appendSkippedPage(int year, int page, String reason) throws IOException {
+        append(new Entry("skipped", year, page, null, null, null, reason));
+    }
+
+    // Filmen gemmes uden detaljer i journalen, så den kan genkendes, men den sendes ikke videre
+    public void appendSkippedMovie(MovieDTO movie, String reason) throws IOException {
+        append(new Entry("skipped", null, null, null, null, movie, reason));
+    }
+
+    public synchronized void markCompleted() throws IOException {
+        closeSegment();
+        Files.writeString(directory.resolve(COMPLETED_MARKER), java.time.Instant.now().toString());
+        logger.info("📓 Journalen er markeret som afsluttet");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+    }
+
+    private synchronized void append(Entry entry) throws IOException {
+        if (writer == null) {
+            Path segment = directory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new GzipCompressorOutputStream(Files.newOutputStream(segment)), StandardCharsets.UTF_8));
+        }
+        writer.write(objectMapper.writeValueAsString(entry));
+        writer.write('\n');
+        if (++recordsInSegment >= RECORDS_PER_SEGMENT) {
+            closeSegment();
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            recordsInSegment = 0;
+        }
+    }
+
+    // Et segment der blev afbrudt midt i skrivningen, læses så langt det rækker
+    private void readSegment(Path segment, Consumer<Entry> consumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GzipCompressorInputStream(Files.newInputStream(segment)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                consumer.accept(objectMapper.readValue(line, Entry.class));
+            }
+        } catch (IOException e) {
+            logger.warn("📓 Segment {} er afkortet og læses kun delvist: {}", segment.getFileName(), e.toString());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingInt(IngestJournal::segmentNumber))
+                    .toList();
+        }
+    }
+
+    private static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,158 @@
+package app.fetcher;
+
+import app.dtos.ActorDTO;
+import app.dtos.DirectorDTO;
+import app.dtos.MovieDTO;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+// Læser svaret fra /movie/{id}?append_to_response=credits token for token og plukker kun de felter
+// MovieDTO skal bruge. Alt andet (produktionsselskaber, hele crew-listen osv.) springes over uden at blive bygget op
+public class MovieDetailsParser {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public MovieDTO parse(InputStream json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+            MovieDTO.MovieDTOBuilder movie = MovieDTO.builder()
+                    .title("Ukendt titel")
+                    .duration(0)
+                    .overview("Ingen beskrivelse")
+                    .releaseDate("Ukendt dato")
+                    .isAdult(false)
+                    .popularity(0.0)
+                    .originalLanguage("Ukendt")
+                    .originalTitle("Ukendt")
+                    .voteAverage(0.0)
+                    .voteCount(0)
+                    .genreIds(new HashSet<>())
+                    .actors(new HashSet<>());
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL && !"backdrop_path".equals(field) && !"poster_path".equals(field)) {
+                    continue;
+                }
+                switch (field) {
+                    case "id" -> movie.imdbId(parser.getLongValue());
+                    case "title" -> movie.title(parser.getText());
+                    case "runtime" -> movie.duration(parser.getValueAsInt());
+                    case "overview" -> movie.overview(parser.getText());
+                    case "release_date" -> movie.releaseDate(parser.getText());
+                    case "adult" -> movie.isAdult(parser.getValueAsBoolean());
+                    case "backdrop_path" -> movie.backdropPath(parser.getValueAsString());
+                    case "poster_path" -> movie.posterPath(parser.getValueAsString());
+                    case "popularity" -> movie.popularity(parser.getValueAsDouble());
+                    case "original_language" -> movie.originalLanguage(parser.getText());
+                    case "original_title" -> movie.originalTitle(parser.getText());
+                    case "vote_average" -> movie.voteAverage(parser.getValueAsDouble());
+                    case "vote_count" -> movie.voteCount(parser.getValueAsInt());
+                    case "genres" -> movie.genreIds(readGenreIds(parser));
+                    case "credits" -> readCredits(parser, movie);
+                    default -> parser.skipChildren();
+                }
+            }
+            return movie.build();
+        }
+    }
+
+    private Set<Integer> readGenreIds(JsonParser parser) throws IOException {
+        Set<Integer> genreIds = new HashSet<>();
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("id".equals(field)) {
+                    genreIds.add(parser.getValueAsInt());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return genreIds;
+    }
+
+    private void readCredits(JsonParser parser, MovieDTO.MovieDTOBuilder movie) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "cast" -> movie.actors(readCast(parser));
+                case "crew" -> movie.director(readDirector(parser));
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private Set<ActorDTO> readCast(JsonParser parser) throws IOException {
+        Set<ActorDTO> actors = new HashSet<>();
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return actors;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Person person = readPerson(parser);
+            actors.add(ActorDTO.builder().id(person.id).name(person.name).build());
+        }
+        return actors;
+    }
+
+    // Første crew-medlem med job "Director", ligesom før; resten af crew-listen læses bare forbi
+    private DirectorDTO readDirector(JsonParser parser) throws IOException {
+        DirectorDTO director = null;
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Person person = readPerson(parser);
+            if (director == null && "Director".equals(person.job)) {
+                director = DirectorDTO.builder().id(person.id).name(person.name).build();
+            }
+        }
+        return director;
+    }
+
+    private Person readPerson(JsonParser parser) throws IOException {
+        Person person = new Person();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> person.id = parser.getValueAsLong();
+                case "name" -> person.name = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "job" -> person.job = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                default -> parser.skipChildren();
+            }
+        }
+        return person;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        // null betyder at svaret blev afbrudt undervejs - det er værd at prøve igen, forkert JSON er ikke
+        if (actual == null) {
+            throw new IOException("TMDB-svaret sluttede før forventet " + expected);
+        }
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Uventet JSON fra TMDB: forventede " + expected + " men fik " + actual);
+        }
+    }
+
+    private static class Person {
+        private Long id;
+        private String name;
+        private String job;
+    }
+}
@@ -0,0 +1,9 @@
+package app.fetcher;
+
+import app.dtos.MovieDTO;
+
+// Modtager færdige film fra FilmFetcher én ad gangen. Må gerne blokere - det giver modtryk hele vejen tilbage i pipelinen
+@FunctionalInterface
+public interface MovieSink {
+    void accept(MovieDTO movie) throws InterruptedException;
+}
@@ -0,0 +1,78 @@
+package app.fetcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Token bucket til TMDB-kald. Raten halveres ved 429 og der holdes pause så længe Retry-After siger;
+// ved succes kryber raten langsomt op mod maksimum igen
+public class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final double maxRate;
+    private final double minRate;
+    private double rate;          // tokens pr. sekund
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    public RateLimiter(double requestsPerSecond) {
+        this.maxRate = requestsPerSecond;
+        this.minRate = Math.max(0.5, requestsPerSecond / 16);
+        this.rate = requestsPerSecond;
+        this.tokens = 1;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+    }
+
+    // Blokerer til der er et token; selve ventetiden sker uden for låsen
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                refill(now);
+                if (now - pausedUntil < 0) {
+                    waitNanos = pausedUntil - now;
+                } else if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                } else {
+                    waitNanos = (long) ((1 - tokens) / rate * 1_000_000_000L);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000L));
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (rate < maxRate) {
+            rate = Math.min(maxRate, rate + maxRate / 100);
+        }
+    }
+
+    public synchronized void onThrottled(Duration retryAfter) {
+        long now = System.nanoTime();
+        rate = Math.max(minRate, rate / 2);
+        tokens = 0;
+        long until = now + retryAfter.toNanos();
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+        logger.warn("🐢 TMDB svarede 429 - pause i {} ms, raten sænkes til {} kald/sek", retryAfter.toMillis(), String.format("%.1f", rate));
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    // Bucket'en rummer højst ét sekunds kald, så der ikke opspares et stort burst
+    private void refill(long now) {
+        double capacity = Math.max(1, rate);
+        tokens = Math.min(capacity, tokens + (now - lastRefill) / 1_000_000_000.0 * rate);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,182 @@
+package app.index;
+
+import app.daos.MovieChange;
+import app.daos.MovieChangeListener;
+import app.enums.SuggestionType;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Forslag mens der tastes, for titler, skuespillere og instruktører. Hver type er et vægtet FST
+// (Lucene WFST) i hukommelsen, så et opslag er en gang ned gennem automaten og de k tungeste grene.
+// Nøglerne er foldet (små bogstaver, uden accenter) og findes både fra starten og fra hvert ord,
+// så "wars" også finder "Star Wars". Det viste navn ligger efter en separator i nøglen
+public class AutocompleteIndex implements MovieChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AutocompleteIndex.class);
+    private static final AutocompleteIndex instance = new AutocompleteIndex();
+
+    private static final char SEPARATOR = '\u001F';
+    private static final int MAX_WEIGHT = Integer.MAX_VALUE;   // Grænsen for WFST-vægte
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autocomplete-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private volatile Map<SuggestionType, Lookup> lookups;
+    private volatile SuggestionSource source;
+
+    private AutocompleteIndex() {
+    }
+
+    public static AutocompleteIndex getInstance() {
+        return instance;
+    }
+
+    public synchronized void rebuild(SuggestionSource source) {
+        long start = System.nanoTime();
+        Map<SuggestionType, Lookup> built = new EnumMap<>(SuggestionType.class);
+        long entries = 0;
+        for (SuggestionType type : SuggestionType.values()) {
+            WFSTCompletionLookup lookup = build(source.loadSuggestions(type));
+            built.put(type, lookup);
+            entries += lookup.getCount();
+        }
+        this.lookups = built;
+        this.source = source;
+        logger.info("🔤 Autocomplete bygget med {} nøgler på {} ms", entries, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Nye navne og vægte kræver at automaten bygges forfra. Det sker i baggrunden, og ændringer der kommer
+    // mens en genopbygning venter, lægges sammen i den samme
+    @Override
+    public void onMoviesChanged(MovieChange change) {
+        SuggestionSource current = source;
+        if (current == null || !rebuildPending.compareAndSet(false, true)) return;
+        rebuilder.submit(() -> {
+            rebuildPending.set(false);
+            try {
+                rebuild(current);
+            } catch (Exception e) {
+                logger.error("Fejl ved genopbygning af autocomplete", e);
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return lookups != null;
+    }
+
+    // De op til limit tungeste navne der har prefix som start på navnet eller på et af ordene
+    public List<String> suggest(SuggestionType type, String prefix, int limit) {
+        Map<SuggestionType, Lookup> current = lookups;
+        if (current == null) {
+            throw new IllegalStateException("Autocomplete er ikke bygget endnu");
+        }
+        String key = fold(prefix.replace(SEPARATOR, ' ')).stripLeading();
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        try {
+            // Samme navn kan matche fra flere ord, så der hentes lidt ekstra før dubletterne fjernes
+            Set<String> names = new LinkedHashSet<>();
+            for (Lookup.LookupResult result : current.get(type).lookup(key, false, limit * 3)) {
+                String suggestion = result.key.toString();
+                names.add(suggestion.substring(suggestion.indexOf(SEPARATOR) + 1));
+                if (names.size() == limit) break;
+            }
+            return List.copyOf(names);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static WFSTCompletionLookup build(Map<String, Double> weights) {
+        // Nøglerne sorteres af WFST selv; hvert ord-start får halv vægt, så navne der starter med prefix kommer først
+        List<Map.Entry<String, Long>> keys = new ArrayList<>();
+        weights.forEach((name, weight) -> {
+            if (name == null || name.isBlank()) return;
+            String display = name.strip().replace(SEPARATOR, ' ');
+            String folded = fold(display);
+            long full = Math.min(MAX_WEIGHT, Math.max(1, Math.round((weight != null ? weight : 0) * 100)));
+            keys.add(Map.entry(folded + SEPARATOR + display, full));
+            for (int i = 1; i < folded.length(); i++) {
+                if (folded.charAt(i - 1) == ' ' && folded.charAt(i) != ' ') {
+                    keys.add(Map.entry(folded.substring(i) + SEPARATOR + display, full / 2));
+                }
+            }
+        });
+
+        WFSTCompletionLookup lookup = new WFSTCompletionLookup(new ByteBuffersDirectory(), "autocomplete", false);
+        try {
+            lookup.build(new EntryIterator(keys.iterator()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lookup;
+    }
+
+    // Små bogstaver og uden accenter; mellemrum og tegnsætning bevares
+    static String fold(String text) {
+        char[] input = text.toLowerCase(Locale.ROOT).toCharArray();
+        char[] output = new char[input.length * 4];
+        int length = ASCIIFoldingFilter.foldToASCII(input, 0, output, 0, input.length);
+        return new String(output, 0, length);
+    }
+
+    private static final class EntryIterator implements InputIterator {
+        private final Iterator<Map.Entry<String, Long>> entries;
+        private long weight;
+
+        private EntryIterator(Iterator<Map.Entry<String, Long>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public BytesRef next() {
+            if (!entries.hasNext()) return null;
+            Map.Entry<String, Long> entry = entries.next();
+            weight = entry.getValue();
+            return new BytesRef(entry.getKey());
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package app.index;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+// Én filterkategori (fx genre eller actor): ordbogskodede værdier -> bitmap af film-ordinaler
+final class Facet {
+
+    private static final int[] NO_VALUES = new int[0];
+
+    private final String[] values;                 // værdi-id -> værdi
+    private final Map<String, Integer> valueIds;   // værdi -> værdi-id
+    private final RoaringBitmap[] postings;        // værdi-id -> film-ordinaler
+    private final int[][] forward;                 // film-ordinal -> værdi-id'er
+    private final int[] sortOrder;                 // værdi-id'er i alfabetisk rækkefølge
+    private final long links;                      // antal (film, værdi)-par i alt
+
+    private Facet(String[] values, Map<String, Integer> valueIds, RoaringBitmap[] postings,
+                  int[][] forward, int[] sortOrder, long links) {
+        this.values = values;
+        this.valueIds = valueIds;
+        this.postings = postings;
+        this.forward = forward;
+        this.sortOrder = sortOrder;
+        this.links = links;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    // Kopi-ved-skrivning: den nye facet deler alle bitmaps og arrays der ikke ændres
+    Editor edit(int size) {
+        return new Editor(this, size);
+    }
+
+    // OR af alle de angivne værdiers bitmaps - ukendte værdier giver ingen film
+    RoaringBitmap anyOf(Collection<String> wanted) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (String value : wanted) {
+            Integer id = valueIds.get(value);
+            if (id != null) {
+                result.or(postings[id]);
+            }
+        }
+        return result;
+    }
+
+    void forEachValue(BiConsumer<String, RoaringBitmap> consumer) {
+        for (int id = 0; id < values.length; id++) {
+            consumer.accept(values[id], postings[id]);
+        }
+    }
+
+    // Tæller værdierne for filmene i base. Vælger den billigste vej: enten gennemløb af filmenes
+    // værdi-id'er (få film) eller kardinaliteten af hver bitmap snittet med base (få værdier)
+    Map<String, Integer> count(RoaringBitmap base) {
+        int[] counts = new int[values.length];
+        double avgValuesPerMovie = forward.length == 0 ? 0 : (double) links / forward.length;
+        double forwardCost = base.getLongCardinality() * avgValuesPerMovie;
+
+        if (forwardCost <= values.length * 8.0) {
+            base.forEach((int ordinal) -> {
+                for (int id : forward[ordinal]) {
+                    counts[id]++;
+                }
+            });
+        } else {
+            for (int id = 0; id < values.length; id++) {
+                counts[id] = RoaringBitmap.andCardinality(postings[id], base);
+            }
+        }
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int id : sortOrder) {
+            if (counts[id] > 0) {
+                result.put(values[id], counts[id]);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    static final class Builder {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> valueIds = new HashMap<>();
+        private final List<RoaringBitmap> postings = new ArrayList<>();
+        private final List<int[]> forward = new ArrayList<>();
+        private long links;
+
+        // Ordinaler skal tilføjes i rækkefølge 0, 1, 2, ...
+        void add(int ordinal, Collection<String> movieValues) {
+            int[] ids = movieValues.stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .mapToInt(this::idOf)
+                    .toArray();
+            for (int id : ids) {
+                postings.get(id).add(ordinal);
+            }
+            forward.add(ids);
+            links += ids.length;
+        }
+
+        private int idOf(String value) {
+            return valueIds.computeIfAbsent(value, v -> {
+                values.add(v);
+                postings.add(new RoaringBitmap());
+                return values.size() - 1;
+            });
+        }
+
+        Facet build() {
+            postings.forEach(RoaringBitmap::runOptimize);
+            String[] valueArray = values.toArray(new String[0]);
+            int[] sortOrder = IntStream.range(0, valueArray.length)
+                    .boxed()
+                    .sorted(Comparator.comparing(id -> valueArray[id]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new Facet(
+                    valueArray,
+                    valueIds,
+                    postings.toArray(new RoaringBitmap[0]),
+                    forward.toArray(new int[0][]),
+                    sortOrder,
+                    links);
+        }
+    }
+
+    static final class Editor {
+        private final Facet base;
+        private final List<String> values;
+        private final List<RoaringBitmap> postings;
+        private final Set<Integer> copied = new HashSet<>();   // værdi-id'er hvis bitmap allerede er kopieret
+        private final int[][] forward;
+        private Map<String, Integer> valueIds;
+        private long links;
+
+        private Editor(Facet base, int size) {
+            this.base = base;
+            this.values = new ArrayList<>(Arrays.asList(base.values));
+            this.postings = new ArrayList<>(Arrays.asList(base.postings));
+            this.valueIds = base.valueIds;
+            this.links = base.links;
+            this.forward = Arrays.copyOf(base.forward, size);
+            for (int ordinal = base.forward.length; ordinal < size; ordinal++) {
+                forward[ordinal] = NO_VALUES;
+            }
+        }
+
+        // Erstatter filmens værdier; en tom samling fjerner filmen fra facetten
+        void set(int ordinal, Collection<String> movieValues) {
+            for (int id : forward[ordinal]) {
+                writable(id).remove(ordinal);
+            }
+            links -= forward[ordinal].length;
+
+            int[] ids = movieValues.stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .mapToInt(this::idOf)
+                    .toArray();
+            for (int id : ids) {
+                writable(id).add(ordinal);
+            }
+            forward[ordinal] = ids;
+            links += ids.length;
+        }
+
+        private RoaringBitmap writable(int id) {
+            if (copied.add(id)) {
+                postings.set(id, postings.get(id).clone());
+            }
+            return postings.get(id);
+        }
+
+        private int idOf(String value) {
+            Integer id = valueIds.get(value);
+            if (id != null) return id;
+
+            if (valueIds == base.valueIds) {
+                valueIds = new HashMap<>(base.valueIds);
+            }
+            values.add(value);
+            postings.add(new RoaringBitmap());
+            copied.add(values.size() - 1);
+            valueIds.put(value, values.size() - 1);
+            return values.size() - 1;
+        }
+
+        Facet build() {
+            copied.forEach(id -> postings.get(id).runOptimize());
+            String[] valueArray = values.toArray(new String[0]);
+            return new Facet(
+                    valueArray,
+                    valueIds,
+                    postings.toArray(new RoaringBitmap[0]),
+                    forward,
+                    mergeSortOrder(valueArray),
+                    links);
+        }
+
+        // Nye værdier sorteres for sig og flettes ind i den eksisterende alfabetiske rækkefølge
+        private int[] mergeSortOrder(String[] valueArray) {
+            int oldCount = base.values.length;
+            if (valueArray.length == oldCount) return base.sortOrder;
+
+            int[] added = IntStream.range(oldCount, valueArray.length)
+                    .boxed()
+                    .sorted(Comparator.comparing(id -> valueArray[id]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            int[] merged = new int[valueArray.length];
+            int i = 0, a = 0, m = 0;
+            while (i < base.sortOrder.length || a < added.length) {
+                if (a == added.length || (i < base.sortOrder.length
+                        && valueArray[base.sortOrder[i]].compareTo(valueArray[added[a]]) <= 0)) {
+                    merged[m++] = base.sortOrder[i++];
+                } else {
+                    merged[m++] = added[a++];
+                }
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package app.index;
+
+import java.util.List;
+
+// Kompakt række med de felter filterindekset har brug for - ingen entiteter eller lazy collections
+public record IndexedMovie(Long id,
+                           String title,
+                           String releaseDate,
+                           String originalLanguage,
+                           double voteAverage,
+                           double popularity,
+                           String director,
+                           List<String> genres,
+                           List<String> actors) {
+
+    public int releaseYear() {
+        if (releaseDate != null && releaseDate.length() >= 4) {
+            try {
+                return Integer.parseInt(releaseDate.substring(0, 4));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    public int ratingBucket() {
+        return (int) Math.floor(voteAverage);
+    }
+
+    // Samme film uden genre- og skuespillerlister; det er alt hvad sorteringerne har brug for
+    public IndexedMovie sortKeys() {
+        return new IndexedMovie(id, title, releaseDate, originalLanguage, voteAverage, popularity, director, List.of(), List.of());
+    }
+}
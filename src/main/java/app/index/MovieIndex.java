@@ -0,0 +1,77 @@
+package app.index;
+
+import app.daos.MovieChange;
+import app.daos.MovieChangeListener;
+import app.dtos.FilterCountDTO;
+import app.enums.MovieSort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MovieIndex implements MovieChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieIndex.class);
+    private static final MovieIndex instance = new MovieIndex();
+    private static final Set<String> FILTERABLE = Set.of("genre", "year", "language", "rating", "director", "actor", "title");
+
+    private volatile MovieIndexSnapshot snapshot;
+
+    private MovieIndex() {
+    }
+
+    public static MovieIndex getInstance() {
+        return instance;
+    }
+
+    public synchronized void rebuild(List<IndexedMovie> movies) {
+        long start = System.nanoTime();
+        snapshot = MovieIndexSnapshot.build(movies);
+        logger.info("🗂️ Filterindeks bygget med {} film på {} ms", movies.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Skrivere serialiseres her; læsere bruger bare det øjebliksbillede de fik, og venter aldrig
+    @Override
+    public synchronized void onMoviesChanged(MovieChange change) {
+        MovieIndexSnapshot current = snapshot;
+        if (current == null) return;   // Indekset bygges fra databasen senere og får ændringen med der
+
+        long start = System.nanoTime();
+        snapshot = current.withChanges(change.upserted(), change.deletedIds());
+        logger.info("🗂️ Filterindeks opdateret med {} ændrede og {} slettede film på {} ms ({} film i alt)",
+                change.upserted().size(), change.deletedIds().size(), (System.nanoTime() - start) / 1_000_000, snapshot.size());
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public FilterCountDTO getFilterCounts(Map<String, List<String>> filters) {
+        return current().filterCounts(filters);
+    }
+
+    public boolean supports(Set<String> filterKeys) {
+        return FILTERABLE.containsAll(filterKeys);
+    }
+
+    public List<Long> findMovieIds(Map<String, List<String>> filters, MovieSort sort, int offset, int limit) {
+        MovieIndexSnapshot current = current();
+        return current.page(current.filterMovies(filters), sort, offset, limit);
+    }
+
+    // Keyset-varianten: de første limit film der sorteres efter after
+    public List<Long> findMovieIdsAfter(Map<String, List<String>> filters, MovieSort sort, IndexedMovie after, int limit) {
+        MovieIndexSnapshot current = current();
+        return current.pageAfter(current.filterMovies(filters), sort, after, limit);
+    }
+
+    private MovieIndexSnapshot current() {
+        MovieIndexSnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("Filterindekset er ikke bygget endnu");
+        }
+        return current;
+    }
+}
@@ -0,0 +1,315 @@
+package app.index;
+
+import app.dtos.FilterCountDTO;
+import app.enums.MovieSort;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Uforanderligt øjebliksbillede af filterindekset. Film identificeres internt ved deres ordinal;
+// ændringer giver et nyt øjebliksbillede der deler alt uændret med det gamle
+final class MovieIndexSnapshot {
+
+    // Samme kategorier og værdier som MovieDAO.calculateFilterCounts tæller på
+    private static final Map<String, Function<IndexedMovie, List<String>>> EXTRACTORS = new LinkedHashMap<>();
+
+    static {
+        EXTRACTORS.put("genre", m -> m.genres() != null ? m.genres() : List.of());
+        EXTRACTORS.put("year", m -> List.of(String.valueOf(m.releaseYear())));
+        EXTRACTORS.put("language", m -> m.originalLanguage() != null ? List.of(m.originalLanguage()) : List.of());
+        EXTRACTORS.put("rating", m -> List.of(String.valueOf(m.ratingBucket())));
+        EXTRACTORS.put("director", m -> List.of(m.director() != null ? m.director() : ""));
+        EXTRACTORS.put("actor", m -> m.actors() != null ? m.actors() : List.of());
+        EXTRACTORS.put("title", m -> m.title() != null ? List.of(m.title()) : List.of());
+    }
+
+    private final IndexedMovie[] rows;              // ordinal -> sorteringsnøgler (null når filmen er slettet)
+    private final String[] lowerCaseTitles;
+    private final Map<Long, Integer> ordinalById;
+    private final RoaringBitmap all;                // alle levende ordinaler
+    private final Map<String, Facet> facets;
+    private final Map<String, Map<String, Integer>> allCounts;
+    private final Map<MovieSort, int[]> orders;     // sortering -> levende ordinaler i rækkefølge
+    private final Map<MovieSort, int[]> ranks;      // sortering -> ordinal -> position
+
+    private MovieIndexSnapshot(IndexedMovie[] rows, String[] lowerCaseTitles, Map<Long, Integer> ordinalById,
+                               RoaringBitmap all, Map<String, Facet> facets, Map<MovieSort, int[]> orders) {
+        this.rows = rows;
+        this.lowerCaseTitles = lowerCaseTitles;
+        this.ordinalById = ordinalById;
+        this.all = all;
+        this.facets = facets;
+        this.orders = orders;
+        this.ranks = new EnumMap<>(MovieSort.class);
+        orders.forEach((sort, order) -> {
+            int[] rank = new int[rows.length];
+            for (int position = 0; position < order.length; position++) {
+                rank[order[position]] = position;
+            }
+            ranks.put(sort, rank);
+        });
+
+        // Tællinger uden filtre er de mest efterspurgte, så de beregnes én gang
+        this.allCounts = new HashMap<>();
+        facets.forEach((category, facet) -> allCounts.put(category, facet.count(all)));
+    }
+
+    static MovieIndexSnapshot build(List<IndexedMovie> movies) {
+        Map<String, Facet.Builder> builders = new LinkedHashMap<>();
+        EXTRACTORS.keySet().forEach(category -> builders.put(category, Facet.builder()));
+
+        IndexedMovie[] rows = new IndexedMovie[movies.size()];
+        String[] lowerCaseTitles = new String[movies.size()];
+        Map<Long, Integer> ordinalById = new HashMap<>();
+        for (int ordinal = 0; ordinal < movies.size(); ordinal++) {
+            IndexedMovie movie = movies.get(ordinal);
+            rows[ordinal] = movie.sortKeys();
+            lowerCaseTitles[ordinal] = lowerCase(movie.title());
+            ordinalById.put(movie.id(), ordinal);
+            for (Map.Entry<String, Function<IndexedMovie, List<String>>> entry : EXTRACTORS.entrySet()) {
+                builders.get(entry.getKey()).add(ordinal, entry.getValue().apply(movie));
+            }
+        }
+
+        Map<String, Facet> facets = new LinkedHashMap<>();
+        builders.forEach((category, builder) -> facets.put(category, builder.build()));
+
+        Map<MovieSort, int[]> orders = new EnumMap<>(MovieSort.class);
+        for (MovieSort sort : MovieSort.values()) {
+            orders.put(sort, sorted(IntStream.range(0, rows.length), rows, sort));
+        }
+
+        RoaringBitmap all = new RoaringBitmap();
+        all.add(0L, rows.length);
+        return new MovieIndexSnapshot(rows, lowerCaseTitles, ordinalById, all, facets, orders);
+    }
+
+    // Nye film får nye ordinaler, opdaterede beholder deres, og slettede fjernes fra alle bitmaps.
+    // Kun de bitmaps og arrays der berøres, kopieres
+    MovieIndexSnapshot withChanges(List<IndexedMovie> upserted, Collection<Long> deletedIds) {
+        Map<Long, Integer> newOrdinalById = new HashMap<>(ordinalById);
+        Map<Integer, IndexedMovie> changed = new LinkedHashMap<>();   // ordinal -> ny række, null = slettet
+        int size = rows.length;
+
+        for (Long id : deletedIds) {
+            Integer ordinal = newOrdinalById.remove(id);
+            if (ordinal != null) changed.put(ordinal, null);
+        }
+        for (IndexedMovie movie : upserted) {
+            Integer ordinal = newOrdinalById.get(movie.id());
+            if (ordinal == null) {
+                ordinal = size++;
+                newOrdinalById.put(movie.id(), ordinal);
+            }
+            changed.put(ordinal, movie);
+        }
+        if (changed.isEmpty()) return this;
+
+        IndexedMovie[] newRows = Arrays.copyOf(rows, size);
+        String[] newTitles = Arrays.copyOf(lowerCaseTitles, size);
+        RoaringBitmap newAll = all.clone();
+        changed.forEach((ordinal, movie) -> {
+            newRows[ordinal] = movie != null ? movie.sortKeys() : null;
+            newTitles[ordinal] = movie != null ? lowerCase(movie.title()) : null;
+            if (movie != null) newAll.add(ordinal);
+            else newAll.remove(ordinal);
+        });
+
+        Map<String, Facet> newFacets = new LinkedHashMap<>();
+        for (Map.Entry<String, Facet> entry : facets.entrySet()) {
+            Function<IndexedMovie, List<String>> extractor = EXTRACTORS.get(entry.getKey());
+            Facet.Editor editor = entry.getValue().edit(size);
+            changed.forEach((ordinal, movie) -> editor.set(ordinal, movie != null ? extractor.apply(movie) : List.of()));
+            newFacets.put(entry.getKey(), editor.build());
+        }
+
+        Map<MovieSort, int[]> newOrders = new EnumMap<>(MovieSort.class);
+        for (MovieSort sort : MovieSort.values()) {
+            int[] fresh = sorted(changed.entrySet().stream()
+                    .filter(entry -> entry.getValue() != null)
+                    .mapToInt(Map.Entry::getKey), newRows, sort);
+            newOrders.put(sort, merge(orders.get(sort), changed.keySet(), fresh, newRows, sort));
+        }
+        return new MovieIndexSnapshot(newRows, newTitles, newOrdinalById, newAll, newFacets, newOrders);
+    }
+
+    int size() {
+        return all.getCardinality();
+    }
+
+    // AND mellem kategorier, OR mellem værdier inden for samme kategori
+    RoaringBitmap matching(Map<String, List<String>> filters) {
+        RoaringBitmap result = all.clone();
+        for (Map.Entry<String, List<String>> entry : filters.entrySet()) {
+            List<String> values = entry.getValue();
+            if (values == null || values.isEmpty()) continue;
+
+            Facet facet = facets.get(entry.getKey());
+            if (facet == null) return new RoaringBitmap();
+
+            result.and(facet.anyOf(normalize(entry.getKey(), values)));
+            if (result.isEmpty()) break;
+        }
+        return result;
+    }
+
+    // Samme betydning som JPQL-stien i MovieDAO.getFilteredMovies: rating er en minimumsværdi,
+    // og title er en delstreng uden hensyn til store/små bogstaver
+    RoaringBitmap filterMovies(Map<String, List<String>> filters) {
+        Map<String, List<String>> exact = new HashMap<>(filters);
+        List<String> title = exact.remove("title");
+        List<String> rating = exact.remove("rating");
+
+        RoaringBitmap result = matching(exact);
+        if (rating != null && !rating.isEmpty()) {
+            result.and(ratingAtLeast(Double.parseDouble(rating.get(0))));
+        }
+        if (title != null && !title.isEmpty() && !result.isEmpty()) {
+            String needle = title.get(0).toLowerCase();
+            RoaringBitmap titleMatches = new RoaringBitmap();
+            result.forEach((int ordinal) -> {
+                if (lowerCaseTitles[ordinal] != null && lowerCaseTitles[ordinal].contains(needle)) {
+                    titleMatches.add(ordinal);
+                }
+            });
+            result = titleMatches;
+        }
+        return result;
+    }
+
+    // Hele rating-buckets over minimum tages direkte fra bitmaps; kun bucket'en minimum ligger i tjekkes film for film
+    private RoaringBitmap ratingAtLeast(double min) {
+        int floor = (int) Math.floor(min);
+        RoaringBitmap result = new RoaringBitmap();
+        facets.get("rating").forEachValue((value, posting) -> {
+            int bucket = Integer.parseInt(value);
+            if (bucket > floor) {
+                result.or(posting);
+            } else if (bucket == floor) {
+                posting.forEach((int ordinal) -> {
+                    if (rows[ordinal].voteAverage() >= min) result.add(ordinal);
+                });
+            }
+        });
+        return result;
+    }
+
+    // Returnerer film-id'erne for ét udsnit af matches i den valgte rækkefølge
+    List<Long> page(RoaringBitmap matches, MovieSort sort, int offset, int limit) {
+        return collect(matches, sort, 0, offset, limit);
+    }
+
+    // Som page, men starter lige efter after i stedet for at tælle offset film frem. after behøver
+    // ikke findes i indekset længere - den binære søgning bruger kun dens sorteringsnøgle og id
+    List<Long> pageAfter(RoaringBitmap matches, MovieSort sort, IndexedMovie after, int limit) {
+        int[] order = orders.get(sort);
+        int low = 0, high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sort.getComparator().compare(rows[order[mid]], after) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return collect(matches, sort, low, 0, limit);
+    }
+
+    private List<Long> collect(RoaringBitmap matches, MovieSort sort, int from, int skip, int limit) {
+        List<Long> result = new ArrayList<>(limit);
+        int cardinality = matches.getCardinality();
+        if (skip >= cardinality || limit <= 0) return result;
+
+        int[] order = orders.get(sort);
+        if (cardinality * 8L < order.length) {
+            // Få matches: sorter deres positioner i stedet for at gennemløbe hele rækkefølgen
+            int[] rank = ranks.get(sort);
+            int[] positions = new int[cardinality];
+            int i = 0;
+            for (int ordinal : matches) {
+                positions[i++] = rank[ordinal];
+            }
+            Arrays.sort(positions);
+            int start = Arrays.binarySearch(positions, from);
+            if (start < 0) start = -start - 1;
+            for (int p = start + skip; p < positions.length && result.size() < limit; p++) {
+                result.add(rows[order[positions[p]]].id());
+            }
+        } else {
+            int seen = 0;
+            for (int p = from; p < order.length; p++) {
+                int ordinal = order[p];
+                if (!matches.contains(ordinal)) continue;
+                if (seen++ < skip) continue;
+                result.add(rows[ordinal].id());
+                if (result.size() == limit) break;
+            }
+        }
+        return result;
+    }
+
+    FilterCountDTO filterCounts(Map<String, List<String>> filters) {
+        RoaringBitmap filtered = filters.isEmpty() ? all : matching(filters);
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        for (Map.Entry<String, Facet> entry : facets.entrySet()) {
+            String category = entry.getKey();
+            boolean onlyThisCategory = filters.size() == 1 && filters.containsKey(category);
+            counts.put(category, filters.isEmpty() || onlyThisCategory
+                    ? allCounts.get(category)
+                    : entry.getValue().count(filtered));
+        }
+        return new FilterCountDTO(
+                counts.get("genre"),
+                counts.get("year"),
+                counts.get("language"),
+                counts.get("rating"),
+                counts.get("director"),
+                counts.get("actor"),
+                counts.get("title"));
+    }
+
+    private static int[] sorted(IntStream ordinals, IndexedMovie[] rows, MovieSort sort) {
+        return ordinals.boxed()
+                .sorted((a, b) -> sort.getComparator().compare(rows[a], rows[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    // Fletter den gamle rækkefølge (uden de ændrede ordinaler) med de ændrede film, som allerede er sorteret
+    private static int[] merge(int[] old, Set<Integer> changed, int[] fresh, IndexedMovie[] rows, MovieSort sort) {
+        int[] merged = new int[old.length + fresh.length];
+        int size = 0;
+        int f = 0;
+        for (int ordinal : old) {
+            if (changed.contains(ordinal)) continue;
+            while (f < fresh.length && sort.getComparator().compare(rows[fresh[f]], rows[ordinal]) < 0) {
+                merged[size++] = fresh[f++];
+            }
+            merged[size++] = ordinal;
+        }
+        while (f < fresh.length) {
+            merged[size++] = fresh[f++];
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    private static String lowerCase(String title) {
+        return title != null ? title.toLowerCase() : null;
+    }
+
+    // Rating-filteret matcher på heltalsdelen af vote_average, ligesom matchesFilter i MovieDAO
+    private static List<String> normalize(String category, List<String> values) {
+        if (!"rating".equals(category)) return values;
+        List<String> buckets = new ArrayList<>();
+        for (String value : values) {
+            try {
+                double rating = Double.parseDouble(value);
+                if (rating == Math.floor(rating)) {
+                    buckets.add(String.valueOf((int) rating));
+                }
+            } catch (NumberFormatException ignored) {
+                // Ugyldige ratings matcher ingen film
+            }
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,180 @@
+package app.index;
+
+import app.daos.MovieChange;
+import app.daos.MovieChangeListener;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Fritekstsøgning i titel, originaltitel og beskrivelse med Lucene i hukommelsen. Bygges fra databasen ved
+// opstart og holdes ajour via MovieChangeFeed. Rangering er BM25 med vægt på titlerne plus filmens popularitet
+public class MovieSearchIndex implements MovieChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieSearchIndex.class);
+    private static final MovieSearchIndex instance = new MovieSearchIndex();
+
+    private static final String ID = "id";
+    private static final String FEATURES = "features";
+    private static final String POPULARITY = "popularity";
+    private static final Map<String, Float> FIELD_BOOSTS = Map.of("title", 3f, "originalTitle", 2f, "overview", 1f);
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private final Analyzer analyzer = new SearchAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private volatile SearchDocumentSource source;
+
+    private MovieSearchIndex() {
+        try {
+            writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(analyzer));
+            searcherManager = new SearcherManager(writer, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static MovieSearchIndex getInstance() {
+        return instance;
+    }
+
+    public synchronized void rebuild(SearchDocumentSource source) {
+        long start = System.nanoTime();
+        try {
+            writer.deleteAll();
+            int[] count = {0};
+            source.loadSearchDocuments(null, document -> {
+                add(document);
+                count[0]++;
+            });
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+            this.source = source;
+            logger.info("🔎 Søgeindeks bygget med {} film på {} ms", count[0], (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Ændrede film genindlæses fra kilden, fordi ændringen kun har felterne til filterindekset
+    @Override
+    public synchronized void onMoviesChanged(MovieChange change) {
+        SearchDocumentSource current = source;
+        if (current == null) return;   // Bygges fra databasen senere og får ændringen med der
+
+        try {
+            for (Long id : change.deletedIds()) {
+                writer.deleteDocuments(new Term(ID, String.valueOf(id)));
+            }
+            if (!change.upserted().isEmpty()) {
+                current.loadSearchDocuments(change.upserted().stream().map(IndexedMovie::id).toList(), this::add);
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isLoaded() {
+        return source != null;
+    }
+
+    // Id'erne på de bedste film, bedste først. Alle ord skal findes; det sidste ord må være et præfiks,
+    // så "star wa" finder "Star Wars" mens der tastes
+    public List<Long> search(String text, int limit) {
+        if (!isLoaded()) {
+            throw new IllegalStateException("Søgeindekset er ikke bygget endnu");
+        }
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            boolean prefix = i == terms.size() - 1 && terms.get(i).length() >= MIN_PREFIX_LENGTH;
+            query.add(termQuery(terms.get(i), prefix), BooleanClause.Occur.MUST);
+        }
+        query.add(FeatureField.newSaturationQuery(FEATURES, POPULARITY), BooleanClause.Occur.SHOULD);
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query.build(), limit);
+                StoredFields storedFields = searcher.storedFields();
+                List<Long> ids = new ArrayList<>(top.scoreDocs.length);
+                for (ScoreDoc hit : top.scoreDocs) {
+                    ids.add(Long.parseLong(storedFields.document(hit.doc).get(ID)));
+                }
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Et ord i et af felterne; et fuldt match tæller mere end et præfiks-match
+    private static Query termQuery(String term, boolean prefix) {
+        BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+        FIELD_BOOSTS.forEach((field, boost) -> {
+            anyField.add(new BoostQuery(new TermQuery(new Term(field, term)), boost), BooleanClause.Occur.SHOULD);
+            if (prefix) {
+                anyField.add(new BoostQuery(new PrefixQuery(new Term(field, term)), boost / 2), BooleanClause.Occur.SHOULD);
+            }
+        });
+        return anyField.build();
+    }
+
+    private void add(SearchDocument movie) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(movie.id()), Field.Store.YES));
+        addText(document, "title", movie.title());
+        addText(document, "originalTitle", movie.originalTitle());
+        addText(document, "overview", movie.overview());
+        if (movie.popularity() > 0) {
+            document.add(new FeatureField(FEATURES, POPULARITY, (float) movie.popularity()));
+        }
+        try {
+            writer.updateDocument(new Term(ID, String.valueOf(movie.id())), document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            document.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream("title", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,9 @@
+package app.index;
+
+// De felter fritekstsøgningen indekserer for én film
+public record SearchDocument(Long id,
+                             String title,
+                             String originalTitle,
+                             String overview,
+                             double popularity) {
+}
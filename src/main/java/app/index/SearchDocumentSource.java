@@ -0,0 +1,9 @@
+package app.index;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// Hvor søgeindekset henter sine dokumenter fra; ids == null betyder alle film
+public interface SearchDocumentSource {
+    void loadSearchDocuments(Collection<Long> ids, Consumer<SearchDocument> consumer);
+}
@@ -0,0 +1,10 @@
+package app.index;
+
+import app.enums.SuggestionType;
+
+import java.util.Map;
+
+// Hvor autocomplete henter sine navne og vægte fra
+public interface SuggestionSource {
+    Map<String, Double> loadSuggestions(SuggestionType type);
+}
@@ -0,0 +1,18 @@
+package app.routes;
+
+import io.javalin.apibuilder.EndpointGroup;
+import app.controller.ActorController;
+import app.security.enums.Role;
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class ActorRoute {
+
+    private final ActorController actorController = new ActorController();
+
+    protected EndpointGroup getActorRoutes() {
+        return () -> {
+            get("/", actorController::getActorSummaries, Role.ANYONE);
+            get("/summary", actorController::getActorSummaries, Role.ANYONE);
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package app.routes;
+
+import io.javalin.apibuilder.EndpointGroup;
+import app.controller.AutocompleteController;
+import app.security.enums.Role;
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class AutocompleteRoute {
+
+    private final AutocompleteController autocompleteController = new AutocompleteController();
+
+    protected EndpointGroup getAutocompleteRoutes() {
+        return () -> {
+            get("/", autocompleteController::suggest, Role.ANYONE);
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package app.routes;
+
+import io.javalin.apibuilder.EndpointGroup;
+import app.controller.ConfigController;
+import app.security.enums.Role;
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class ConfigRoute {
+
+    private final ConfigController configController = new ConfigController();
+
+    protected EndpointGroup getConfigRoutes() {
+        return () -> {
+            get("/", configController::getConfig, Role.ADMIN);
+            post("/reload", configController::reloadConfig, Role.ADMIN);
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package app.routes;
+
+import io.javalin.apibuilder.EndpointGroup;
+import app.controller.DirectorController;
+import app.security.enums.Role;
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class DirectorRoute {
+
+    private final DirectorController directorController = new DirectorController();
+
+    protected EndpointGroup getDirectorRoutes() {
+        return () -> {
+            get("/", directorController::getDirectors, Role.ANYONE);
+            get("/summary", directorController::getDirectorSummaries, Role.ANYONE);
+        };
+    }
+}
@@ -15,6 +15,8 @@ public class MovieRoute {
             get("/all", movieController::getAllMovies, Role.ANYONE);
             get("/filtermovies", movieController::getFilteredMovies, Role.ANYONE);
             get("/filtercounts", movieController::getFilteredCounts, Role.ANYONE);
+            get("/search", movieController::searchMovies, Role.ANYONE);
+            get("/export", movieController::exportMovies, Role.USER);
         };
     }
 }
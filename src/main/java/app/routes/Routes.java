@@ -14,6 +14,11 @@ import java.time.ZoneId;
 
 public class Routes {
     private final MovieRoute movieRoute = new MovieRoute();
+    private final ActorRoute actorRoute = new ActorRoute();
+    private final DirectorRoute directorRoute = new DirectorRoute();
+    private final AutocompleteRoute autocompleteRoute = new AutocompleteRoute();
+    private final StatsRoute statsRoute = new StatsRoute();
+    private final ConfigRoute configRoute = new ConfigRoute();
     private static final Instant serverStart = Instant.now();
 
     public EndpointGroup getRoutes() {
@@ -40,6 +45,11 @@ public class Routes {
             });
 
             path("movies", movieRoute.getMovieRoutes());
+            path("actors", actorRoute.getActorRoutes());
+            path("directors", directorRoute.getDirectorRoutes());
+            path("autocomplete", autocompleteRoute.getAutocompleteRoutes());
+            path("stats", statsRoute.getStatsRoutes());
+            path("config", configRoute.getConfigRoutes());
         };
     }
 }
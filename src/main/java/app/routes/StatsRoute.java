@@ -0,0 +1,22 @@
+package app.routes;
+
+import io.javalin.apibuilder.EndpointGroup;
+import app.controller.StatsController;
+import app.security.enums.Role;
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class StatsRoute {
+
+    private final StatsController statsController = new StatsController();
+
+    protected EndpointGroup getStatsRoutes() {
+        return () -> {
+            get("/cache", statsController::getCacheStats, Role.ADMIN);
+            delete("/cache", statsController::resetStats, Role.ADMIN);
+            get("/responses", statsController::getResponseCacheStats, Role.ADMIN);
+            get("/pool", statsController::getPoolStats, Role.ADMIN);
+            delete("/pool", statsController::resetPoolStats, Role.ADMIN);
+            get("/replica", statsController::getReplicaStats, Role.ADMIN);
+        };
+    }
+}
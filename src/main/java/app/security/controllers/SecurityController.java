@@ -3,7 +3,8 @@ package app.security.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.JOSEException;
-import app.utils.Utils;
+import app.config.AppConfig;
+import app.utils.ApiProps;
 import app.config.HibernateConfig;
 import app.security.daos.ISecurityDAO;
 import app.security.daos.SecurityDAO;
@@ -14,6 +15,7 @@ import app.security.exceptions.ValidationException;
 import dk.bugelhartmann.ITokenSecurity;
 import dk.bugelhartmann.TokenSecurity;
 import dk.bugelhartmann.UserDTO;
+import io.javalin.http.Context;
 import io.javalin.http.Handler;
 import io.javalin.http.HttpStatus;
 import io.javalin.http.UnauthorizedResponse;
@@ -39,13 +41,19 @@ public class SecurityController implements ISecurityController {
     private static SecurityController instance;
     private static Logger logger = LoggerFactory.getLogger(SecurityController.class);
 
-    private SecurityController() { }
+    private final VerifiedTokenCache verifiedTokens = new VerifiedTokenCache(ApiProps.JWT_CACHE_MAX_ENTRIES);
+    private final Handler authenticateHandler = this::authenticateRequest;
+
+    private SecurityController() {
+        // A reload may bring a new SECRET_KEY - tokens verified with the old one must be checked again
+        AppConfig.onReload(config -> verifiedTokens.clear());
+    }
 
     public static SecurityController getInstance() { // Singleton because we don't want multiple instances of the same class
         if (instance == null) {
             instance = new SecurityController();
+            securityDAO = new SecurityDAO(HibernateConfig.getEntityManagerFactory());
         }
-        securityDAO = new SecurityDAO(HibernateConfig.getEntityManagerFactory());
         return instance;
     }
 
@@ -66,6 +74,8 @@ public class SecurityController implements ISecurityController {
                 ctx.status(401);
                 System.out.println(e.getMessage());
                 ctx.json(returnObject.put("msg", e.getMessage()));
+            } catch (ApiException e) {
+                rejectLogin(ctx, returnObject, e);
             }
         };
     }
@@ -85,39 +95,50 @@ public class SecurityController implements ISecurityController {
             } catch (EntityExistsException e) {
                 ctx.status(HttpStatus.UNPROCESSABLE_CONTENT);
                 ctx.json(returnObject.put("msg", "User already exists"));
+            } catch (ApiException e) {
+                rejectLogin(ctx, returnObject, e);
             }
         };
     }
 
+    // The bcrypt pool sheds load with 503 - tell the client when to retry instead of letting it become a 500
+    private static void rejectLogin(Context ctx, ObjectNode returnObject, ApiException e) {
+        if (e.getCode() == HttpStatus.SERVICE_UNAVAILABLE.getCode()) {
+            ctx.header("Retry-After", "1");
+        }
+        ctx.status(e.getCode());
+        ctx.json(returnObject.put("msg", e.getMessage()));
+    }
+
     @Override
     public Handler authenticate() throws UnauthorizedResponse {
+        return authenticateHandler;   // Stateless, so the same handler serves every request
+    }
 
-        ObjectNode returnObject = objectMapper.createObjectNode();
-        return (ctx) -> {
-            // This is a preflight request => OK
-            if (ctx.method().toString().equals("OPTIONS")) {
-                ctx.status(200);
-                return;
-            }
-            String header = ctx.header("Authorization");
-            if (header == null) {
-                throw new UnauthorizedResponse("Authorization header missing");
-            }
+    private void authenticateRequest(Context ctx) {
+        // This is a preflight request => OK
+        if (ctx.method().toString().equals("OPTIONS")) {
+            ctx.status(200);
+            return;
+        }
+        String header = ctx.header("Authorization");
+        if (header == null) {
+            throw new UnauthorizedResponse("Authorization header missing");
+        }
 
-            String[] headerParts = header.split(" ");
-            if (headerParts.length != 2) {
-                throw new UnauthorizedResponse("Authorization header malformed");
-            }
+        String[] headerParts = header.split(" ");
+        if (headerParts.length != 2) {
+            throw new UnauthorizedResponse("Authorization header malformed");
+        }
 
-            String token = headerParts[1];
-            UserDTO verifiedTokenUser = verifyToken(token);
+        String token = headerParts[1];
+        UserDTO verifiedTokenUser = verifyToken(token);
 
-            if (verifiedTokenUser == null) {
-                throw new UnauthorizedResponse("Invalid User or Token");
-            }
-            logger.info("User verified: " + verifiedTokenUser);
-            ctx.attribute("user", verifiedTokenUser);
-        };
+        if (verifiedTokenUser == null) {
+            throw new UnauthorizedResponse("Invalid User or Token");
+        }
+        logger.debug("User verified: {}", verifiedTokenUser);
+        ctx.attribute("user", verifiedTokenUser);
     }
 
     @Override
@@ -137,20 +158,8 @@ public class SecurityController implements ISecurityController {
     @Override
     public String createToken(UserDTO user) {
         try {
-            String ISSUER;
-            String TOKEN_EXPIRE_TIME;
-            String SECRET_KEY;
-
-            if (System.getenv("DEPLOYED") != null) {
-                ISSUER = System.getenv("ISSUER");
-                TOKEN_EXPIRE_TIME = System.getenv("TOKEN_EXPIRE_TIME");
-                SECRET_KEY = System.getenv("SECRET_KEY");
-            } else {
-                ISSUER = Utils.getPropertyValue("ISSUER", "config.properties");
-                TOKEN_EXPIRE_TIME = Utils.getPropertyValue("TOKEN_EXPIRE_TIME", "config.properties");
-                SECRET_KEY = Utils.getPropertyValue("SECRET_KEY", "config.properties");
-            }
-            return tokenSecurity.createToken(user, ISSUER, TOKEN_EXPIRE_TIME, SECRET_KEY);
+            AppConfig config = AppConfig.get();   // Issuer, lifetime and key read from the same snapshot
+            return tokenSecurity.createToken(user, config.getIssuer(), config.getTokenExpireTime(), config.getSecretKey());
         } catch (Exception e) {
             e.printStackTrace();
             throw new ApiException(500, "Could not create token");
@@ -159,12 +168,17 @@ public class SecurityController implements ISecurityController {
 
     @Override
     public UserDTO verifyToken(String token) {
-        boolean IS_DEPLOYED = (System.getenv("DEPLOYED") != null);
-        String SECRET = IS_DEPLOYED ? System.getenv("SECRET_KEY") : Utils.getPropertyValue("SECRET_KEY", "config.properties");
+        // A token seen before is trusted until its own exp - the signature can't have changed
+        UserDTO cached = verifiedTokens.get(token);
+        if (cached != null) {
+            return cached;
+        }
 
         try {
-            if (tokenSecurity.tokenIsValid(token, SECRET) && tokenSecurity.tokenNotExpired(token)) {
-                return tokenSecurity.getUserWithRolesFromToken(token);
+            if (tokenSecurity.tokenIsValid(token, AppConfig.get().getSecretKey()) && tokenSecurity.tokenNotExpired(token)) {
+                UserDTO user = tokenSecurity.getUserWithRolesFromToken(token);
+                verifiedTokens.put(token, user);
+                return user;
             } else {
                 throw new NotAuthorizedException(403, "Token is not valid");
             }
@@ -0,0 +1,91 @@
+package app.security.controllers;
+
+import com.nimbusds.jwt.SignedJWT;
+import dk.bugelhartmann.UserDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Purpose: Remember tokens that already passed signature and expiry checks, so hot protected routes
+ * don't re-verify the HMAC on every request. Entries are keyed by a SHA-256 of the token (the raw
+ * bearer token is never kept) and are dropped at the token's own exp claim. Bounded LRU.
+ */
+class VerifiedTokenCache {
+
+    private record Entry(String username, Set<String> roles, long expiresAt) { }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > VerifiedTokenCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Returns a fresh copy of the cached user, or null if the token is unknown or has expired since
+    UserDTO get(String token) {
+        String key = hash(token);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        return entry == null ? null : new UserDTO(entry.username(), new HashSet<>(entry.roles()));
+    }
+
+    // Only call this after the token has been verified. Tokens without an exp claim are never cached
+    void put(String token, UserDTO user) {
+        long expiresAt = expiresAt(token);
+        if (expiresAt <= System.currentTimeMillis() || user.getRoles() == null) {
+            return;
+        }
+        Entry entry = new Entry(user.getUsername(), Set.copyOf(user.getRoles()), expiresAt);
+        String key = hash(token);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static long expiresAt(String token) {
+        try {
+            Date exp = SignedJWT.parse(token).getJWTClaimsSet().getExpirationTime();
+            return exp == null ? 0 : exp.getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
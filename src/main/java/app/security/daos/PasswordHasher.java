@@ -0,0 +1,149 @@
+package app.security.daos;
+
+import app.security.exceptions.ApiException;
+import app.utils.ApiProps;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Purpose: Run bcrypt on a small dedicated pool instead of on the request threads, so a burst of
+ * logins can only ever use BCRYPT_THREADS cores. The queue is bounded, and a request is turned
+ * away up front (503) when the queue ahead of it would take longer than BCRYPT_MAX_WAIT_MS at the
+ * currently measured hash time - it would time out anyway, and rejecting early keeps the queue short.
+ */
+public class PasswordHasher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+    private static final PasswordHasher instance = new PasswordHasher();
+
+    private final int threads = ApiProps.BCRYPT_THREADS;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger inFlight = new AtomicInteger();   // submitted and not yet finished
+    private final AtomicLong avgHashNanos;                        // moving average of one bcrypt call
+    private final AtomicLong rejected = new AtomicLong();
+
+    private PasswordHasher() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(ApiProps.BCRYPT_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // Roughly 2^cost * 0.1 ms on current hardware until the first real measurement comes in
+        avgHashNanos = new AtomicLong((1L << ApiProps.BCRYPT_COST) * 100_000L);
+    }
+
+    public static PasswordHasher getInstance() {
+        return instance;
+    }
+
+    public boolean verify(String password, String hash) {
+        return run(() -> BCrypt.checkpw(password, hash));
+    }
+
+    public String hash(String password) {
+        return run(() -> BCrypt.hashpw(password, BCrypt.gensalt(ApiProps.BCRYPT_COST)));
+    }
+
+    // True for hashes made with another cost than BCRYPT_COST ($2a$10$... -> 10)
+    public boolean needsRehash(String hash) {
+        try {
+            return hash == null || hash.length() < 7 || Integer.parseInt(hash.substring(4, 6)) != ApiProps.BCRYPT_COST;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // Best effort: hashes with the current cost and hands the result to onHashed on the bcrypt thread.
+    // Silently skipped when the pool is busy - the next login will try again
+    public void rehashLater(String password, Consumer<String> onHashed) {
+        if (inFlight.get() >= threads) {
+            return;
+        }
+        try {
+            submit(() -> {
+                try {
+                    onHashed.accept(BCrypt.hashpw(password, BCrypt.gensalt(ApiProps.BCRYPT_COST)));
+                } catch (Exception e) {
+                    logger.warn("Could not rehash password: {}", e.getMessage());
+                }
+                return null;
+            }, new AtomicBoolean());
+        } catch (RejectedExecutionException e) {
+            // Full queue - skip
+        }
+    }
+
+    private <T> T run(Callable<T> work) {
+        long expectedWait = (inFlight.get() / threads) * avgHashNanos.get();
+        if (expectedWait > TimeUnit.MILLISECONDS.toNanos(ApiProps.BCRYPT_MAX_WAIT_MS)) {
+            throw overloaded();
+        }
+
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = submit(work, claimed);
+        } catch (RejectedExecutionException e) {
+            throw overloaded();
+        }
+        try {
+            return future.get(ApiProps.BCRYPT_MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            // cancel() also succeeds for a task that is already running, so only the claim flag tells whether the
+            // task started. If it did, it counts itself out when the hash finishes; if not, it never will
+            if (!claimed.getAndSet(true)) {
+                inFlight.decrementAndGet();
+            }
+            throw overloaded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(500, "Interrupted while checking password");
+        } catch (ExecutionException e) {
+            throw new ApiException(500, "Could not check password: " + e.getCause().getMessage());
+        }
+    }
+
+    // Counts the task in from submit until it has run, and feeds its run time into the average. Whoever sets
+    // claimed first - the task when it starts, or run() when it gives up - is the one that counts it out
+    private <T> Future<T> submit(Callable<T> work, AtomicBoolean claimed) {
+        inFlight.incrementAndGet();
+        try {
+            return executor.submit(() -> {
+                if (claimed.getAndSet(true)) {
+                    return null;   // The caller timed out while this was queued and has already counted it out
+                }
+                long start = System.nanoTime();
+                try {
+                    return work.call();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    avgHashNanos.updateAndGet(avg -> avg + (elapsed - avg) / 8);
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private ApiException overloaded() {
+        long count = rejected.incrementAndGet();
+        if (count % 100 == 1) {
+            logger.warn("Login pool overloaded - {} password checks rejected so far", count);
+        }
+        return new ApiException(503, "Too many logins right now, please try again in a moment");
+    }
+}
@@ -23,6 +23,7 @@ public class SecurityDAO implements ISecurityDAO {
 
     private static ISecurityDAO instance;
     private static EntityManagerFactory emf;
+    private final PasswordHasher passwordHasher = PasswordHasher.getInstance();
 
     public SecurityDAO(EntityManagerFactory _emf) {
         emf = _emf;
@@ -32,26 +33,48 @@ public class SecurityDAO implements ISecurityDAO {
         return emf.createEntityManager();
     }
 
+    // The user is looked up and the EntityManager closed before bcrypt runs, so no connection is held during the hash
     @Override
     public UserDTO getVerifiedUser(String username, String password) throws ValidationException {
+        User user;
         try (EntityManager em = getEntityManager()) {
-            User user = em.find(User.class, username);
+            user = em.find(User.class, username);
             if (user == null)
                 throw new EntityNotFoundException("No user found with username: " + username); //RuntimeException
             user.getRoles().size(); // force roles to be fetched from db
-            if (!user.verifyPassword(password))
-                throw new ValidationException("Wrong password");
-            return new UserDTO(user.getUsername(), user.getRoles().stream().map(r -> r.getRoleName()).collect(Collectors.toSet()));
+        }
+        if (!passwordHasher.verify(password, user.getPassword()))
+            throw new ValidationException("Wrong password");
+        if (passwordHasher.needsRehash(user.getPassword()))
+            passwordHasher.rehashLater(password, hash -> updatePasswordHash(username, user.getPassword(), hash));
+        return new UserDTO(user.getUsername(), user.getRoles().stream().map(r -> r.getRoleName()).collect(Collectors.toSet()));
+    }
+
+    // Only replaces the hash the password was verified against, in case it was changed in the meantime
+    private void updatePasswordHash(String username, String oldHash, String newHash) {
+        try (EntityManager em = getEntityManager()) {
+            em.getTransaction().begin();
+            em.createQuery("UPDATE User u SET u.password = :newHash WHERE u.username = :username AND u.password = :oldHash")
+                    .setParameter("newHash", newHash)
+                    .setParameter("username", username)
+                    .setParameter("oldHash", oldHash)
+                    .executeUpdate();
+            em.getTransaction().commit();
         }
     }
 
     @Override
     public User createUser(String username, String password) {
         try (EntityManager em = getEntityManager()) {
-            User userEntity = em.find(User.class, username);
-            if (userEntity != null)
+            if (em.find(User.class, username) != null)
                 throw new EntityExistsException("User with username: " + username + " already exists");
-            userEntity = new User(username, password);
+        }
+        String hash = passwordHasher.hash(password);   // Throws ApiException(503) when the login pool is full
+
+        try (EntityManager em = getEntityManager()) {
+            User userEntity = new User();
+            userEntity.setUsername(username);
+            userEntity.setPassword(hash);
             em.getTransaction().begin();
             Role userRole = em.find(Role.class, "user");
             if (userRole == null)
@@ -1,5 +1,6 @@
 package app.security.entities;
 
+import app.utils.ApiProps;
 import jakarta.persistence.*;
 import lombok.*;
 import org.mindrot.jbcrypt.BCrypt;
@@ -55,7 +56,7 @@ public class User implements Serializable, ISecurityUser {
 
     public User(String userName, String userPass) {
         this.username = userName;
-        this.password = BCrypt.hashpw(userPass, BCrypt.gensalt());
+        this.password = BCrypt.hashpw(userPass, BCrypt.gensalt(ApiProps.BCRYPT_COST));
     }
 
     public User(String userName, Set<Role> roleEntityList) {
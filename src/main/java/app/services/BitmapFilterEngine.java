@@ -0,0 +1,45 @@
+package app.services;
+
+import app.daos.MovieDAO;
+import app.dtos.MovieCursor;
+import app.dtos.MovieDTO;
+import app.enums.MovieField;
+import app.enums.MovieSort;
+import app.index.MovieIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Filtrering som bitmap-operationer i MovieIndex; kun den side af id'er der skal vises, hentes fra databasen
+public class BitmapFilterEngine implements IFilterEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(BitmapFilterEngine.class);
+    private final MovieDAO movieDAO;
+    private final MovieIndex movieIndex;
+    private final IFilterEngine fallback;
+
+    public BitmapFilterEngine(MovieDAO movieDAO, MovieIndex movieIndex) {
+        this.movieDAO = movieDAO;
+        this.movieIndex = movieIndex;
+        this.fallback = new JpqlFilterEngine(movieDAO);
+    }
+
+    @Override
+    public List<MovieDTO> getFilteredMovies(Map<String, List<String>> filters, MovieSort sort, MovieCursor cursor, int page, int pageSize,
+                                            Set<MovieField> fields) {
+        if (!movieIndex.isLoaded() || !movieIndex.supports(filters.keySet())) {
+            logger.info("Filterindekset kan ikke bruges til {}, falder tilbage til JPQL", filters.keySet());
+            return fallback.getFilteredMovies(filters, sort, cursor, page, pageSize, fields);
+        }
+        if ((cursor == null && page < 1) || pageSize <= 0) {
+            throw new IllegalArgumentException("Page must be >= 1 and pageSize must be > 0");
+        }
+        List<Long> ids = cursor != null
+                ? movieIndex.findMovieIdsAfter(filters, sort, cursor.probe(), pageSize)
+                : movieIndex.findMovieIds(filters, sort, (page - 1) * pageSize, pageSize);
+        return movieDAO.findByIds(ids, fields);
+    }
+}
@@ -1,41 +1,51 @@
 package app.services;
 
 import app.config.HibernateConfig;
+import app.daos.IMovieBulkLoader;
+import app.daos.MovieCopyLoader;
 import app.daos.MovieDAO;
-import app.dtos.MovieDTO;
 import app.exceptions.ApiException;
 import app.fetcher.FilmFetcher;
+import app.utils.ApiProps;
 import jakarta.persistence.EntityManagerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-
 public class FilmService {
 
     private static final Logger logger = LoggerFactory.getLogger(FilmService.class);
     private final FilmFetcher filmFetcher;
     private final MovieDAO movieDAO;
+    private final IMovieBulkLoader bulkLoader;
 
     public FilmService(FilmFetcher filmFetcher) {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
         this.movieDAO = MovieDAO.getInstance(emf);
         this.filmFetcher = filmFetcher;
+        // "copy" streamer batches ind via PostgreSQL COPY og staging-tabeller, "jpa" gemmer entiteter via MovieDAO
+        this.bulkLoader = "copy".equalsIgnoreCase(ApiProps.INGEST_MODE)
+                ? MovieCopyLoader.getInstance(emf)
+                : movieDAO::create;
+        logger.info("Indlæsning gemmer film med {}", "copy".equalsIgnoreCase(ApiProps.INGEST_MODE) ? "COPY" : "JPA");
     }
 
+    // Hentning og gemning kører samtidig: fetcheren sender film til en MovieBatchWriter, der gemmer dem i batches
     public void fetchAndSaveMovies() {
-        try {
-            List<MovieDTO> movieDTOList = filmFetcher.fetchMoviesFromLastTenYears();
-            System.out.println("Fetched " + movieDTOList.size() + " movies");
-            logger.info("🎬 Hentede {} film fra API'et.", movieDTOList.size());
-
-            for (MovieDTO dto : movieDTOList) {
-                dto.setGenreNames(filmFetcher.getGenreNames(dto.getGenreIds()));
+        try (MovieBatchWriter writer = new MovieBatchWriter(bulkLoader, ApiProps.INGEST_BATCH_SIZE)) {
+            int fetched = filmFetcher.fetchMoviesFromLastTenYears(writer);
+            int saved = writer.finish();
+            logger.info("🎬 Hentede {} film fra API'et, {} nye blev gemt.", fetched, saved);
+            // Journalen afsluttes når kun opgivne sider og film mangler - ellers henter næste opstart de fejlede igen
+            int failed = filmFetcher.getFailedFetches();
+            if (failed > 0) {
+                logger.warn("⚠️ {} sider eller film mangler - journalen forbliver åben, så de hentes igen ved næste opstart", failed);
+            } else {
+                filmFetcher.getJournal().markCompleted();
+                logger.info("✅ Alle film er nu gemt i databasen ({} sider eller film sprunget over).", filmFetcher.getSkippedFetches());
             }
-
-            movieDAO.create(movieDTOList);
-            System.out.println("Movies saved...");
-            logger.info("✅ Alle film er nu gemt i databasen.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(500, "Hentning af film blev afbrudt", e);
         } catch (Exception e) {
             throw new ApiException(500, "Fejl ved hentning eller gemning af film", e);
         }
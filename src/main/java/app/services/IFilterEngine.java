@@ -0,0 +1,16 @@
+package app.services;
+
+import app.dtos.MovieCursor;
+import app.dtos.MovieDTO;
+import app.enums.MovieField;
+import app.enums.MovieSort;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface IFilterEngine {
+    // cursor == null giver offset-pagination med page, ellers siden efter cursoren. fields == null giver hele film
+    List<MovieDTO> getFilteredMovies(Map<String, List<String>> filters, MovieSort sort, MovieCursor cursor, int page, int pageSize,
+                                     Set<MovieField> fields);
+}
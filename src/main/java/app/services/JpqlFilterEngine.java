@@ -0,0 +1,27 @@
+package app.services;
+
+import app.daos.MovieDAO;
+import app.dtos.MovieCursor;
+import app.dtos.MovieDTO;
+import app.enums.MovieField;
+import app.enums.MovieSort;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Filtrering direkte i databasen via den dynamiske JPQL-forespørgsel i MovieDAO
+public class JpqlFilterEngine implements IFilterEngine {
+
+    private final MovieDAO movieDAO;
+
+    public JpqlFilterEngine(MovieDAO movieDAO) {
+        this.movieDAO = movieDAO;
+    }
+
+    @Override
+    public List<MovieDTO> getFilteredMovies(Map<String, List<String>> filters, MovieSort sort, MovieCursor cursor, int page, int pageSize,
+                                            Set<MovieField> fields) {
+        return movieDAO.getFilteredMovies(filters, sort, cursor, page, pageSize, fields);
+    }
+}
@@ -0,0 +1,88 @@
+package app.services;
+
+import app.daos.IMovieBulkLoader;
+import app.dtos.MovieDTO;
+import app.fetcher.MovieSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Gemmer film i batches i sin egen tråd, mens de stadig bliver hentet. Køen er begrænset, så der aldrig
+// ligger mere end et par batches i hukommelsen, uanset hvor stort kataloget er
+public class MovieBatchWriter implements MovieSink, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieBatchWriter.class);
+    private static final MovieDTO END_OF_STREAM = new MovieDTO();
+
+    private final IMovieBulkLoader loader;
+    private final int batchSize;
+    private final BlockingQueue<MovieDTO> queue;
+    private final Thread worker;
+    private volatile RuntimeException failure;
+    private int saved;
+
+    public MovieBatchWriter(IMovieBulkLoader loader, int batchSize) {
+        this.loader = loader;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(batchSize * 2);
+        this.worker = new Thread(this::run, "movie-batch-writer");
+        this.worker.start();
+    }
+
+    @Override
+    public void accept(MovieDTO movie) throws InterruptedException {
+        if (failure != null) {
+            throw failure;   // Stop hentningen hvis databasen ikke kan følge med
+        }
+        queue.put(movie);
+    }
+
+    // Gemmer resten og venter på at alt er skrevet; returnerer antallet af nye film
+    public int finish() throws InterruptedException {
+        if (failure == null) {
+            queue.put(END_OF_STREAM);
+        }
+        worker.join();
+        if (failure != null) {
+            throw failure;
+        }
+        return saved;
+    }
+
+    @Override
+    public void close() {
+        if (worker.isAlive()) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        List<MovieDTO> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                MovieDTO movie = queue.take();
+                boolean last = movie == END_OF_STREAM;
+                if (!last) {
+                    batch.add(movie);
+                    queue.drainTo(batch, batchSize - batch.size());
+                    last = batch.removeIf(m -> m == END_OF_STREAM);
+                }
+                if (batch.size() >= batchSize || (last && !batch.isEmpty())) {
+                    saved += loader.load(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+                if (last) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("❌ Kunne ikke gemme batch med {} film", batch.size(), e);
+            failure = e;
+            queue.clear();
+        }
+    }
+}
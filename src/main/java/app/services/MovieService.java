@@ -3,6 +3,7 @@ package app.services;
 import app.config.HibernateConfig;
 import app.daos.MovieDAO;
 import app.dtos.MovieDTO;
+import app.enums.MovieSort;
 import app.exceptions.ApiException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityManagerFactory;
@@ -24,10 +25,7 @@ public class MovieService {
 
     public List<MovieDTO> getAllMoviesByPageAndSize(int page, int size) {
         try {
-            List<MovieDTO> movies = movieDAO.getMovies(page, size)
-                    .stream()
-                    .map(MovieDTO::new)
-                    .toList();
+            List<MovieDTO> movies = movieDAO.getMovies(MovieSort.POPULARITY, page, size);
 
             logger.info("✅ Hentede {} film (page: {}, size: {})", movies.size(), page, size);
             return movies;
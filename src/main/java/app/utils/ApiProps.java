@@ -1,12 +1,75 @@
 package app.utils;
 
+import app.config.AppConfig;
+
+// Læses én gang ved opstart fra AppConfig - ændringer her kræver genstart, også efter en genindlæsning
 public class ApiProps {
 
+    private static final AppConfig config = AppConfig.get();
+
     public static final String DB_NAME = "moviedb";
     public static final String DB_USERNAME = "postgres";
     public static final String DB_PASSWORD = "postgres";
-    public static final String DB_URL = "jdbc:postgresql://localhost:5432/" + DB_NAME;
+    // reWriteBatchedInserts lader PgJDBC samle en batch af INSERTs til få INSERT ... VALUES (...), (...) sætninger
+    public static final String DB_URL = "jdbc:postgresql://localhost:5432/" + DB_NAME + "?reWriteBatchedInserts=true";
 
     public static final int PORT = 7070;
     public static final String API_CONTEXT = "/api";
-}
\ No newline at end of file
+
+    // "bitmap" filtrerer i MovieIndex, "jpql" filtrerer direkte i databasen
+    public static final String FILTER_ENGINE = config.getString("FILTER_ENGINE", "bitmap");
+
+    // TMDB-indlæsning: maks. kald pr. sekund (sænkes automatisk ved 429) og antal samtidige detaljehentere
+    public static final int TMDB_REQUESTS_PER_SECOND = config.getInt("TMDB_REQUESTS_PER_SECOND", 40);
+    public static final int TMDB_FETCH_THREADS = config.getInt("TMDB_FETCH_THREADS", 15);
+
+    // "virtual" kører TMDB-hentning og Javalin-requests på virtuelle tråde, "platform" på almindelige trådpuljer
+    public static final boolean VIRTUAL_THREADS = "virtual".equalsIgnoreCase(config.getString("THREAD_MODE", "platform"));
+
+    // Mappe til journalen over TMDB-indlæsningen; slet den for at hente alt forfra fra TMDB
+    public static final String INGEST_JOURNAL_DIR = config.getString("INGEST_JOURNAL_DIR", "ingest-journal");
+
+    // Antal film pr. transaktion når indlæsningen gemmer mens den henter
+    public static final int INGEST_BATCH_SIZE = config.getInt("INGEST_BATCH_SIZE", 1000);
+
+    // JDBC-batchstørrelse for almindelige requests og for indlæsningen, hvor join-tabellerne giver mange rækker pr. film
+    public static final int JDBC_BATCH_SIZE = config.getInt("JDBC_BATCH_SIZE", 50);
+    public static final int INGEST_JDBC_BATCH_SIZE = config.getInt("INGEST_JDBC_BATCH_SIZE", 500);
+
+    // "jpa" gemmer indlæste film som entiteter, "copy" bruger PostgreSQL COPY og mængdebaseret SQL
+    public static final String INGEST_MODE = config.getString("INGEST_MODE", "jpa");
+
+    // Hibernate-statistik til /api/stats/cache. Koster lidt på hver session, så standard er slået fra i drift
+    public static final boolean HIBERNATE_STATISTICS = Boolean.parseBoolean(
+            config.getString("HIBERNATE_STATISTICS", String.valueOf(!config.isDeployed())));
+
+    // Øvre grænse for de færdigserialiserede svar i ResponseCache
+    public static final int RESPONSE_CACHE_MAX_MB = config.getInt("RESPONSE_CACHE_MAX_MB", 64);
+
+    // HikariCP: puljestørrelse, hvor længe en request må vente på en forbindelse, og hvor længe en forbindelse
+    // må være lånt ud før den logges som mulig lækage (0 slår lækagesporing fra)
+    public static final int DB_POOL_MAX_SIZE = config.getInt("DB_POOL_MAX_SIZE", 10);
+    public static final int DB_POOL_MIN_IDLE = config.getInt("DB_POOL_MIN_IDLE", 2);
+    public static final long DB_POOL_CONNECTION_TIMEOUT_MS = config.getLong("DB_POOL_CONNECTION_TIMEOUT_MS", 5000);
+    public static final long DB_POOL_LEAK_DETECTION_MS = config.getLong("DB_POOL_LEAK_DETECTION_MS", 30000);
+
+    // PgJDBC: antal kørsler før en sætning forberedes på serveren, og hvor mange forberedte sætninger hver forbindelse husker
+    public static final int DB_PREPARE_THRESHOLD = config.getInt("DB_PREPARE_THRESHOLD", 3);
+    public static final int DB_STATEMENT_CACHE_QUERIES = config.getInt("DB_STATEMENT_CACHE_QUERIES", 512);
+
+    // Læsereplika til de tunge læse-endpoints (tom = alt går til primæren). Replikaen springes over når den
+    // halter mere end DB_REPLICA_MAX_LAG_SECONDS efter, eller ikke svarer
+    public static final String DB_REPLICA_URL = config.getString("DB_REPLICA_URL", "");
+    public static final int DB_REPLICA_MAX_LAG_SECONDS = config.getInt("DB_REPLICA_MAX_LAG_SECONDS", 5);
+
+    // Antal verificerede JWT'er der huskes, så beskyttede routes ikke tjekker signaturen igen før tokenet udløber
+    public static final int JWT_CACHE_MAX_ENTRIES = config.getInt("JWT_CACHE_MAX_ENTRIES", 10000);
+
+    // bcrypt til login og oprettelse: cost-faktor (hashes med en anden cost opgraderes ved næste login), antal tråde
+    // (standard er halvdelen af kernerne), kølængde og hvor længe et login må vente før det afvises med 503
+    public static final int BCRYPT_COST = config.getInt("BCRYPT_COST", 10);
+    public static final int BCRYPT_THREADS = config.getInt("BCRYPT_THREADS",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    public static final int BCRYPT_QUEUE_SIZE = config.getInt("BCRYPT_QUEUE_SIZE", 32);
+    public static final long BCRYPT_MAX_WAIT_MS = config.getLong("BCRYPT_MAX_WAIT_MS", 2000);
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import app.config.AppConfig;
 import app.security.exceptions.ApiException;
 import io.javalin.http.Context;
 
@@ -24,6 +25,14 @@ public class Utils {
     public static String getPropertyValue(String propName, String resourceName)  {
         // REMEMBER TO BUILD WITH MAVEN FIRST. Read the property file if not deployed (else read system vars instead)
         // Read from ressources/config.properties or from pom.xml depending on the ressourceName
+        if ("config.properties".equals(resourceName)) {
+            // Already loaded once by AppConfig - no classpath I/O per call
+            String value = AppConfig.get().getFileValue(propName);
+            if (value == null) {
+                throw new ApiException(500, String.format("Property %s not found in %s", propName, resourceName));
+            }
+            return value;
+        }
         try (InputStream is = Utils.class.getClassLoader().getResourceAsStream(resourceName)) {
             Properties prop = new Properties();
             prop.load(is);